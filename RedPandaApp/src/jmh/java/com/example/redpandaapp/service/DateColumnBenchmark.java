@@ -0,0 +1,81 @@
+package com.example.redpandaapp.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/*
+ * 日付列の文字列化と年齢計算（1行あたり日付4列 + 年齢1回）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateColumnBenchmark {
+
+    private final ExcelImportService service = new ExcelImportService(new SimpleMeterRegistry());
+    private XSSFWorkbook workbook;
+    private FormulaEvaluator evaluator;
+    private Cell dateCell;
+    private Cell textCell;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workbook = new XSSFWorkbook();
+        var row = workbook.createSheet().createRow(0);
+        dateCell = row.createCell(0);
+        dateCell.setCellValue(LocalDate.of(2015, 6, 20));
+        textCell = row.createCell(1);
+        textCell.setCellValue("2015/06/20");
+        evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workbook.close();
+    }
+
+    @Benchmark
+    public String calculateAgeAlive() {
+        return ExcelImportService.calculateAge("2015/06/20", "");
+    }
+
+    @Benchmark
+    public String calculateAgeDead() {
+        return ExcelImportService.calculateAge("2009/07/01", "2021/03/15");
+    }
+
+    // 生年月日が空・不正（例外で "" を返す経路）
+    @Benchmark
+    public String calculateAgeInvalid() {
+        return ExcelImportService.calculateAge("", "");
+    }
+
+    @Benchmark
+    public String formatSerialDate() {
+        return ExcelImportService.formatSerialDate(42175.0);
+    }
+
+    @Benchmark
+    public String formatDateCellNumeric() {
+        return service.formatDateCell(dateCell, evaluator);
+    }
+
+    @Benchmark
+    public String formatDateCellText() {
+        return service.formatDateCell(textCell, evaluator);
+    }
+}
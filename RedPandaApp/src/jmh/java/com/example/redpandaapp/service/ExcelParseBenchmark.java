@@ -0,0 +1,57 @@
+package com.example.redpandaapp.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.redpandaapp.model.RedPanda;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/*
+ * Excel の読込（起動時・定期再取得のたびに走る）
+ * sheet=backup は同梱のバックアップ、数値は合成した行数。SAX 版と DOM 版を比べる。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExcelParseBenchmark {
+
+    @Param({ "backup", "5000", "50000" })
+    public String sheet;
+
+    private byte[] xlsx;
+    private final ExcelImportService dom = new ExcelImportService(new SimpleMeterRegistry());
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        if ("backup".equals(sheet)) {
+            try (InputStream in = getClass().getResourceAsStream("/redpandas_backup.xlsx")) {
+                xlsx = in.readAllBytes();
+            }
+        } else {
+            xlsx = SyntheticPandas.workbook(Integer.parseInt(sheet));
+        }
+    }
+
+    @Benchmark
+    public List<RedPanda> streaming() throws Exception {
+        return new ExcelStreamingParser().parse(new ByteArrayInputStream(xlsx));
+    }
+
+    @Benchmark
+    public List<RedPanda> dom() throws Exception {
+        return dom.parseExcelDom(new ByteArrayInputStream(xlsx));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.redpandaapp.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/*
+ * 個体画像URLの列挙
+ * probe: 索引が無いときの候補列挙（HEAD の代わりに集合で存在確認し、通信以外の費用だけを測る）
+ * manifest: 索引からの検索
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ImageUrlsBenchmark {
+
+    @Param({ "ふうた", "Ｆｕｕ　Ｔａ" })
+    public String name;
+
+    private Set<String> bucket;
+    private ImageManifest manifest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 500 個体 × 3枚程度の公開バケットを想定
+        List<AssetLister.AssetObject> objects = new ArrayList<>();
+        bucket = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            String base = (i == 0) ? "ふうた" : "panda" + i;
+            for (String fn : List.of(base + ".jpg", base + "1.jpg", base + "2.png")) {
+                objects.add(new AssetLister.AssetObject(fn, "1"));
+                bucket.add(fn);
+            }
+        }
+        manifest = new ImageManifest(() -> objects);
+        manifest.refresh();
+    }
+
+    @Benchmark
+    public List<String> probe() {
+        List<String> urls = new ArrayList<>();
+        for (String fn : ImageManifest.probeCandidates(name)) {
+            if (bucket.contains(fn)) urls.add(ImageManifest.URL_PREFIX + fn);
+        }
+        return urls.stream().distinct().toList();
+    }
+
+    @Benchmark
+    public List<String> manifest() {
+        return manifest.imageUrls(name);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.redpandaapp.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/*
+ * 個体名の正規化（画像索引・検索・家系図で個体ごとに呼ばれる）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NameNormalizerBenchmark {
+
+    @Param({ "ふうた", "レッサー・ソラ（2代目）", "Ｆｕｕ　Ｔａ", "coco" })
+    public String name;
+
+    @Benchmark
+    public String normalizeName() {
+        return NameNormalizer.normalizeName(name);
+    }
+
+    @Benchmark
+    public String fold() {
+        return NameNormalizer.fold(name);
+    }
+}
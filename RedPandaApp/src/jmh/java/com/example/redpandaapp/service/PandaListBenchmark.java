@@ -0,0 +1,60 @@
+package com.example.redpandaapp.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.redpandaapp.model.RedPanda;
+
+/*
+ * 一覧（/redpandas）の絞り込み・並べ替え・ページング
+ * 並べ替えと索引作成はスナップショットごとに1回（index）、リクエストごとは検索とページ切り出し（page）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PandaListBenchmark {
+
+    @Param({ "200", "5000" })
+    public int pandas;
+
+    // 空 = 全件、個体名の一部、園名、該当なし
+    @Param({ "", "ふう", "茶臼山", "いない個体" })
+    public String q;
+
+    private static final int SIZE = 12;
+
+    private List<RedPanda> list;
+    private PandaSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = SyntheticPandas.pandas(pandas);
+        index = new PandaSearchIndex(list);
+    }
+
+    @Benchmark
+    public PandaSearchIndex index() {
+        return new PandaSearchIndex(list);
+    }
+
+    // コントローラと同じく在園・過去在園の各1ページ目を切り出す
+    @Benchmark
+    public Object page() {
+        PandaSearchIndex.Result found = index.search(q);
+        return new Object[] { paginate(found.inPark()), paginate(found.past()) };
+    }
+
+    private static List<RedPanda> paginate(List<RedPanda> l) {
+        return l.subList(0, Math.min(SIZE, l.size()));
+    }
+}
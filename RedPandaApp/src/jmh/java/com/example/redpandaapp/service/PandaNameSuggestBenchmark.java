@@ -0,0 +1,53 @@
+package com.example.redpandaapp.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.redpandaapp.model.RedPanda;
+
+/*
+ * 個体名の入力補完（/api/redpandas/suggest）
+ * 木の作成はスナップショットごとに1回（build）、1文字ごとのリクエストは suggest。
+ * gc プロファイラの gc.alloc.rate.norm で、前方一致だけで済む入力の割り当て量を確かめる。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PandaNameSuggestBenchmark {
+
+    @Param({ "200", "5000" })
+    public int pandas;
+
+    // 前方一致（かな・カタカナ・ローマ字）、半角カナ（NFKC が要る）、編集距離1で補う入力
+    @Param({ "ふう", "ミン", "fuu", "ﾌｳﾀ", "ふた" })
+    public String q;
+
+    private List<RedPanda> list;
+    private PandaNameSuggester suggester;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = SyntheticPandas.pandas(pandas);
+        suggester = new PandaNameSuggester(list);
+    }
+
+    @Benchmark
+    public PandaNameSuggester build() {
+        return new PandaNameSuggester(list);
+    }
+
+    @Benchmark
+    public PandaNameSuggester.Result suggest() {
+        return suggester.suggest(q, false, 8);
+    }
+}
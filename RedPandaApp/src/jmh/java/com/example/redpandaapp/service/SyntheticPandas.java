@@ -0,0 +1,100 @@
+package com.example.redpandaapp.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import com.example.redpandaapp.model.RedPanda;
+
+/*
+ * ベンチマーク用の合成データ（乱数の種を固定し、毎回同じ内容を作る）
+ */
+final class SyntheticPandas {
+
+    private SyntheticPandas() {}
+
+    private static final String[] NAMES = { "ふうた", "みらい", "ココ", "ハナビ", "Ｒｉｎ", "レッサー・ソラ", "ゆずは", "ミンファ", "ジャスミン" };
+    private static final String[] ZOOS = { "茶臼山動物園", "円山動物園", "千葉市動物公園", "西山動物園", "野毛山動物園", "王子動物園" };
+    private static final String[] FEATURES = { "しっぽのしま模様がくっきり", "顔が白い", "リンゴが大好き", "木登りが得意", "" };
+
+    static List<RedPanda> pandas(int n) {
+        Random r = new Random(42);
+        List<RedPanda> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String[] cols = row(r, i);
+            list.add(ExcelImportService.toRedPanda(cols));
+        }
+        return list;
+    }
+
+    /*
+     * 本番の Excel と同じ並び（見出し2行 + データ + 最終行の注記）の xlsx
+     */
+    static byte[] workbook(int rows) throws IOException {
+        Random r = new Random(42);
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(1000);
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet();
+            CellStyle date = wb.createCellStyle();
+            date.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("yyyy/mm/dd"));
+
+            sheet.createRow(0).createCell(0).setCellValue("レッサーパンダ一覧");
+            Row header = sheet.createRow(1);
+            for (int c = 0; c < ExcelImportService.COLUMN_COUNT; c++) header.createCell(c).setCellValue("列" + c);
+
+            for (int i = 0; i < rows; i++) {
+                String[] cols = row(r, i);
+                Row row = sheet.createRow(i + 2);
+                for (int c = 0; c < ExcelImportService.COLUMN_COUNT; c++) {
+                    if (c == ExcelImportService.AGE_COLUMN || cols[c].isEmpty()) continue;
+                    if (ExcelImportService.isDateColumn(c)) {
+                        var cell = row.createCell(c);
+                        cell.setCellValue(LocalDate.parse(cols[c], ExcelImportService.DATE_FORMAT));
+                        cell.setCellStyle(date);
+                    } else {
+                        row.createCell(c).setCellValue(cols[c]);
+                    }
+                }
+            }
+            sheet.createRow(rows + 2).createCell(0).setCellValue("※ 合成データ");
+
+            wb.write(out);
+            wb.dispose();
+            return out.toByteArray();
+        }
+    }
+
+    // 1行分（年齢列は空。日付は yyyy/MM/dd）
+    private static String[] row(Random r, int i) {
+        LocalDate birth = LocalDate.of(2000, 1, 1).plusDays(r.nextInt(9000));
+        boolean dead = r.nextInt(4) == 0;
+        boolean movedOut = !dead && r.nextInt(4) == 0;
+
+        String[] cols = new String[ExcelImportService.COLUMN_COUNT];
+        cols[0] = NAMES[i % NAMES.length] + (i / NAMES.length == 0 ? "" : Integer.toString(i / NAMES.length));
+        cols[1] = r.nextBoolean() ? "オス" : "メス";
+        cols[2] = birth.format(ExcelImportService.DATE_FORMAT);
+        cols[3] = dead ? birth.plusDays(1000 + r.nextInt(4000)).format(ExcelImportService.DATE_FORMAT) : "";
+        cols[4] = "";
+        cols[5] = movedOut ? birth.plusDays(400 + r.nextInt(2000)).format(ExcelImportService.DATE_FORMAT) : "";
+        cols[6] = movedOut ? ZOOS[r.nextInt(ZOOS.length)] : "";
+        cols[7] = birth.plusDays(r.nextInt(800)).format(ExcelImportService.DATE_FORMAT);
+        cols[8] = ZOOS[r.nextInt(ZOOS.length)];
+        cols[9] = NAMES[r.nextInt(NAMES.length)];
+        cols[10] = NAMES[r.nextInt(NAMES.length)];
+        cols[11] = r.nextBoolean() ? NAMES[r.nextInt(NAMES.length)] : "";
+        cols[12] = "";
+        cols[13] = "";
+        cols[14] = r.nextBoolean() ? "おっとり" : "好奇心旺盛";
+        cols[15] = FEATURES[r.nextInt(FEATURES.length)];
+        return cols;
+    }
+}
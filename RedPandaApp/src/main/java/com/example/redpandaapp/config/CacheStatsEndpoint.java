@@ -0,0 +1,63 @@
+package com.example.redpandaapp.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.example.redpandaapp.repository.DiaryPostRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ * 日記キャッシュの統計（領域ごとのヒット・ミス・件数）
+ * 運用向けなので Actuator のエンドポイント（/actuator/cachestats）として出し、公開するかは
+ * management.endpoints.web.exposure.include で /actuator/prometheus と同じように決める。
+ */
+@Component
+@Endpoint(id = "cachestats")
+public class CacheStatsEndpoint {
+
+    // 二次キャッシュの領域（DiaryPost の @Cache と application.conf に合わせる）
+    private static final String[] REGIONS = { "diaryPost", DiaryPostRepository.QUERY_CACHE_REGION };
+
+    private final Statistics statistics;
+
+    public CacheStatsEndpoint(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /** 領域ごとの統計 */
+    public record RegionStats(long hits, long misses, long puts, long elementsInMemory, double hitRatio) {}
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Map<String, RegionStats> regions = new LinkedHashMap<>();
+        for (String region : REGIONS) {
+            CacheRegionStatistics s = statistics.getCacheRegionStatistics(region);
+            if (s == null) continue;
+            regions.put(region, new RegionStats(s.getHitCount(), s.getMissCount(), s.getPutCount(),
+                    s.getElementCountInMemory(), ratio(s.getHitCount(), s.getMissCount())));
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("regions", regions);
+        body.put("queryCache", new RegionStats(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount(), -1,
+                ratio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount())));
+        // 実際に DB へ発行したクエリ数（キャッシュが効いていれば一覧の表示回数より小さい）
+        body.put("queryExecutions", statistics.getQueryExecutionCount());
+        body.put("entityLoads", statistics.getEntityLoadCount());
+        return body;
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.redpandaapp.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ * 日記の採番を IDENTITY からシーケンスに切り替えたことへの対応
+ * 既存の DB では ddl-auto=update で作られたシーケンスが 1 から始まり、既存の id と衝突する。
+ * 起動時（スキーマ更新の後、投稿を受け付ける前）にシーケンスを max(id) 以上に進めておく。
+ */
+@Configuration
+public class DiaryPostSequenceConfig {
+
+    private final DataSource dataSource;
+
+    // EntityManagerFactory を受け取るのは、スキーマ更新（シーケンス作成）が済んでから動かすため
+    public DiaryPostSequenceConfig(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.dataSource = dataSource;
+    }
+
+    @PostConstruct
+    void alignSequence() throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            // H2（テスト・ローカル）は毎回空の DB から作るので対象外
+            if (!"PostgreSQL".equals(con.getMetaData().getDatabaseProductName())) return;
+        }
+
+        // pooled は「nextval の値まで」を1ブロックとして使うので、現在値を max(id) に合わせれば次は max(id)+1 から
+        new JdbcTemplate(dataSource).queryForObject(
+                "select setval('diary_post_seq', greatest("
+                        + " (select coalesce(max(id), 0) from diary_post),"
+                        + " (select last_value from diary_post_seq), 1))",
+                Long.class);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.redpandaapp.config;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.boot.actuate.metrics.data.DefaultRepositoryTagsProvider;
+import org.springframework.boot.actuate.metrics.data.RepositoryTagsProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.example.redpandaapp.service.DiaryFeedBroadcaster;
+import com.example.redpandaapp.service.RedPandaRegistry;
+import com.example.redpandaapp.service.UploadAdmissionControl;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/*
+ * メトリクス（/actuator/prometheus）の追加設定
+ * HTTP・リポジトリ・Hibernate の統計は Spring Boot が自動で記録する。ここではタグの追加と、
+ * 各サービスが持っている統計値のメーター登録だけを行う。
+ */
+@Configuration
+public class MetricsConfig {
+
+    /*
+     * リポジトリ呼び出し（spring.data.repository.invocations）に、呼び出し元の URL パターンを endpoint タグで付ける
+     * 定期処理・一括取り込みなどリクエスト外からの呼び出しは none
+     */
+    @Bean
+    public RepositoryTagsProvider repositoryTagsProvider() {
+        DefaultRepositoryTagsProvider defaults = new DefaultRepositoryTagsProvider();
+        return invocation -> Tags.of(defaults.repositoryTags(invocation)).and("endpoint", currentEndpoint());
+    }
+
+    private static String currentEndpoint() {
+        RequestAttributes attrs = RequestContextHolder.getRequestAttributes();
+        if (attrs == null) return "none";
+        try {
+            Object pattern = attrs.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE,
+                    RequestAttributes.SCOPE_REQUEST);
+            return pattern == null ? "none" : pattern.toString();
+        } catch (IllegalStateException e) {
+            // 期限切れで取り残された fork 先など、リクエストが既に終わっている
+            return "none";
+        }
+    }
+
+    // 写真投稿の受付制御（待ち・処理中の件数と、受付/拒否の累計）
+    @Bean
+    public MeterBinder uploadAdmissionMetrics(UploadAdmissionControl admission) {
+        return registry -> {
+            Gauge.builder("redpanda.upload.admission.queued", admission, a -> a.stats().queued()).register(registry);
+            Gauge.builder("redpanda.upload.admission.in_flight", admission, a -> a.stats().inFlight()).register(registry);
+            FunctionCounter.builder("redpanda.upload.admission", admission, a -> a.stats().admitted())
+                    .tag("result", "admitted").register(registry);
+            FunctionCounter.builder("redpanda.upload.admission", admission, a -> a.stats().rejectedRate())
+                    .tag("result", "rejected_rate").register(registry);
+            FunctionCounter.builder("redpanda.upload.admission", admission, a -> a.stats().rejectedBusy())
+                    .tag("result", "rejected_busy").register(registry);
+        };
+    }
+
+    // 新着日記のライブ配信の購読者数
+    @Bean
+    public MeterBinder feedMetrics(DiaryFeedBroadcaster feed) {
+        return registry -> Gauge.builder("redpanda.feed.subscribers", feed, DiaryFeedBroadcaster::subscriberCount)
+                .register(registry);
+    }
+
+    /*
+     * 個体データの取得元ごとの鮮度（最後に最新を確認してからの秒数。未確認なら NaN）と、直近の取得の成否
+     * 取得元は起動時に決まるので、設定の並び順の位置で状態を引く
+     */
+    @Bean
+    public MeterBinder pandaSourceMetrics(RedPandaRegistry pandaRegistry) {
+        return registry -> {
+            List<RedPandaRegistry.SourceStatus> initial = pandaRegistry.sourceStatuses();
+            for (int i = 0; i < initial.size(); i++) {
+                int index = i;
+                String id = initial.get(i).id();
+                Gauge.builder("redpanda.source.age", pandaRegistry, r -> age(r.sourceStatuses().get(index)))
+                        .tag("source", id).baseUnit("seconds").register(registry);
+                Gauge.builder("redpanda.source.up", pandaRegistry,
+                                r -> "ok".equals(r.sourceStatuses().get(index).state()) ? 1 : 0)
+                        .tag("source", id).register(registry);
+                Gauge.builder("redpanda.source.pandas", pandaRegistry, r -> r.sourceStatuses().get(index).pandas())
+                        .tag("source", id).register(registry);
+            }
+        };
+    }
+
+    private static double age(RedPandaRegistry.SourceStatus s) {
+        Instant at = s.lastSuccessAt();
+        return at == null ? Double.NaN : Duration.between(at, Instant.now()).toMillis() / 1000.0;
+    }
+}
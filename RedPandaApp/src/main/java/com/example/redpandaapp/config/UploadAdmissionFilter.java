@@ -0,0 +1,80 @@
+package com.example.redpandaapp.config;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.redpandaapp.service.UploadAdmissionControl;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ * 写真投稿（POST /posts）の受付制御
+ * multipart の本文は DispatcherServlet が読み込むので、その手前のフィルタで判定し、
+ * 断る場合は本文を読まずに 429 を返す。
+ */
+public class UploadAdmissionFilter extends OncePerRequestFilter {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final UploadAdmissionControl admission;
+
+    public UploadAdmissionFilter(UploadAdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        UploadAdmissionControl.Decision decision;
+        try {
+            decision = admission.tryAdmit(clientKey(request));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        if (!decision.admitted()) {
+            response.setStatus(TOO_MANY_REQUESTS);
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(decision.retryAfterSeconds()));
+            // 本文を読まずに返すので、接続は閉じてもらう
+            response.setHeader(HttpHeaders.CONNECTION, "close");
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("rate".equals(decision.reason())
+                    ? "短時間に投稿が続いています。しばらくしてから再度お試しください。"
+                    : "投稿が集中しています。しばらくしてから再度お試しください。");
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            admission.release();
+        }
+    }
+
+    /*
+     * クライアントの識別（Cloud Run では X-Forwarded-For の末尾がフロントエンドの付けた接続元）
+     * 先頭側はクライアントが自由に書けるので使わない
+     */
+    private static String clientKey(HttpServletRequest request) {
+        String xff = request.getHeader("X-Forwarded-For");
+        if (xff != null && !xff.isBlank()) {
+            String[] hops = xff.split(",");
+            String last = hops[hops.length - 1].trim();
+            if (!last.isEmpty()) return last;
+        }
+        return request.getRemoteAddr();
+    }
+}
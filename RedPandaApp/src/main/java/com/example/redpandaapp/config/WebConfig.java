@@ -1,23 +1,19 @@
 package com.example.redpandaapp.config;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
-@Configuration
-public class WebConfig implements WebMvcConfigurer {
+import com.example.redpandaapp.service.UploadAdmissionControl;
 
-    @Value("${app.upload-dir}")
-    private String uploadDir;
+@Configuration
+public class WebConfig {
 
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-        registry.addResourceHandler("/images/**")
-                .addResourceLocations("file:" + uploadPath.toString() + "/");
+    // 写真投稿の受付制御は投稿の保存先（POST /posts）だけにかける
+    @Bean
+    public FilterRegistrationBean<UploadAdmissionFilter> uploadAdmissionFilter(UploadAdmissionControl admission) {
+        FilterRegistrationBean<UploadAdmissionFilter> bean = new FilterRegistrationBean<>(new UploadAdmissionFilter(admission));
+        bean.addUrlPatterns("/posts");
+        return bean;
     }
 }
@@ -1,11 +1,13 @@
 package com.example.redpandaapp.controller;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,9 +17,13 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import com.example.redpandaapp.model.DiaryPost;
-import com.example.redpandaapp.model.RedPanda;
 import com.example.redpandaapp.repository.DiaryPostRepository;
-import com.example.redpandaapp.service.ExcelImportService;
+import com.example.redpandaapp.repository.PostCursor;
+import com.example.redpandaapp.service.ContentAddressedUploadStore;
+import com.example.redpandaapp.service.DiaryFeedBroadcaster;
+import com.example.redpandaapp.service.DiarySearchIndex;
+import com.example.redpandaapp.service.DiaryStatsService;
+import com.example.redpandaapp.service.RedPandaRegistry;
 
 import jakarta.validation.Valid;
 
@@ -26,53 +32,77 @@ import jakarta.validation.Valid;
 public class DiaryController {
 
     private final DiaryPostRepository repo;
-    private final ExcelImportService excel;
-
-    public DiaryController(DiaryPostRepository repo, ExcelImportService excel) {
+    private final RedPandaRegistry registry;
+    private final ContentAddressedUploadStore uploadStore;
+    private final DiarySearchIndex searchIndex;
+    private final DiaryStatsService diaryStats;
+    private final DiaryFeedBroadcaster feed;
+
+    public DiaryController(DiaryPostRepository repo, RedPandaRegistry registry,
+                           ContentAddressedUploadStore uploadStore, DiarySearchIndex searchIndex,
+                           DiaryStatsService diaryStats, DiaryFeedBroadcaster feed) {
         this.repo = repo;
-        this.excel = excel;
+        this.registry = registry;
+        this.uploadStore = uploadStore;
+        this.searchIndex = searchIndex;
+        this.diaryStats = diaryStats;
+        this.feed = feed;
     }
 
-    private static final String EXCEL_URL =
-            "https://ckan.odp.jig.jp/dataset/d62824ca-8b19-4d8f-b81d-7f7cc114f25d/resource/ccc95c6d-e3d0-4dd6-99fb-163704f5ab33/download/-.xlsx";
-
-    /** 一覧（ページング＆検索／個体名フィルタ） */
+    /** 一覧（カーソルページング＆検索／個体名フィルタ） */
     @GetMapping
     public String list(
             @RequestParam(name = "pandaName", required = false) String pandaName, // 図鑑からの完全一致フィルタ
-            @RequestParam(name = "q",         required = false) String q,         // 部分一致検索
-            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "q",         required = false) String q,         // 個体名・コメントの検索
+            @RequestParam(name = "cursor",    required = false) String cursor,    // この投稿より古いものを表示
             @RequestParam(name = "size", defaultValue = "10") int size,
             Model model) {
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Page<DiaryPost> result;
+        if (size <= 0 || size > 100) size = 10;
+        PostCursor after = PostCursor.decode(cursor);
+        Slice<DiaryPost> result;
 
         if (pandaName != null && !pandaName.isBlank()) {
             // 図鑑の「個体名リンク」から来たときはこちらを優先（完全一致）
-            result = repo.findByPandaName(pandaName, pageable);
+            result = repo.findLatestByPandaName(pandaName, after, size);
+        } else if (q != null && !q.isBlank() && searchIndex.isReady()) {
+            // 全文検索（個体名・コメント）
+            result = search(q, after, size);
         } else if (q != null && !q.isBlank()) {
-            // 検索（部分一致・大文字小文字無視）
-            result = repo.findByPandaNameContainingIgnoreCase(q.trim(), pageable);
+            // 索引の作成前は個体名の部分一致で検索
+            result = repo.findLatestByPandaNameContaining(q.trim(), after, size);
         } else {
             // 全件
-            result = repo.findAll(pageable);
+            result = repo.findLatest(after, size);
         }
 
         model.addAttribute("page", result);
+        model.addAttribute("cursor", after == null ? null : cursor);
+        model.addAttribute("nextCursor", PostCursor.next(result));
         model.addAttribute("pandaName", pandaName);
         model.addAttribute("q", q);
         model.addAttribute("size", size);
         return "post_list";
     }
 
+    // 検索インデックスで投稿IDを引き、主キーでまとめて取得して新しい順に並べる
+    private Slice<DiaryPost> search(String q, PostCursor after, int size) {
+        DiarySearchIndex.Hits hits = searchIndex.search(q, after == null ? null : after.id(), size);
+        Map<Long, DiaryPost> byId = new HashMap<>();
+        for (DiaryPost p : repo.findAllById(hits.postIds())) {
+            byId.put(p.getId(), p);
+        }
+        List<DiaryPost> content = hits.postIds().stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new SliceImpl<>(content, PageRequest.of(0, size), hits.hasNext());
+    }
+
     /** 新規投稿フォーム */
     @GetMapping("/new")
     public String showForm(@RequestParam(name = "pandaName", required = false) String pandaName,
                            Model model) {
-        List<RedPanda> postables = excel.loadPostableRedPandas(EXCEL_URL);
-        model.addAttribute("postables", postables);
-
         DiaryPost post = new DiaryPost();
         if (pandaName != null && !pandaName.isBlank()) post.setPandaName(pandaName);
         model.addAttribute("post", post);
@@ -86,40 +116,48 @@ public class DiaryController {
             @Valid @ModelAttribute("post") DiaryPost post,
             org.springframework.validation.BindingResult binding,
             @RequestParam(value = "image", required = false) org.springframework.web.multipart.MultipartFile image,
-            @org.springframework.beans.factory.annotation.Value("${app.upload-dir}") String uploadDir,
             Model model) throws Exception {
 
         // 画面に戻るときに必要
         if (binding.hasErrors()) {
-            model.addAttribute("postables", excel.loadPostableRedPandas(EXCEL_URL));
+            return "post_form";
+        }
+
+        // 個体名は入力補完から選ぶ自由入力なので、在園個体かどうかをここで確かめる
+        if (!isPostable(post.getPandaName())) {
+            binding.rejectValue("pandaName", "pandaName.unknown", "個体名は候補から選んでください。");
             return "post_form";
         }
 
         // 写真が必須
         if (image == null || image.isEmpty()) {
             binding.rejectValue("imageFilename", "image.required", "写真は必須です。");
-            model.addAttribute("postables", excel.loadPostableRedPandas(EXCEL_URL));
             return "post_form";
         }
 
-        if (image != null && !image.isEmpty()) {
-            String ct = image.getContentType();
-            if (ct == null || !ct.startsWith("image/")) {
-                throw new IllegalArgumentException("画像ファイルのみアップロード可能です。");
-            }
-            String ext = org.springframework.util.StringUtils.getFilenameExtension(image.getOriginalFilename());
-            String safeName = java.util.UUID.randomUUID().toString().replace("-", "");
-            String filename = (ext == null || ext.isBlank()) ? safeName : safeName + "." + ext;
-
-            java.nio.file.Path dir = java.nio.file.Paths.get(uploadDir).toAbsolutePath().normalize();
-            java.nio.file.Files.createDirectories(dir);
-            java.nio.file.Path dest = dir.resolve(filename);
-
-            image.transferTo(dest.toFile());
-            post.setImageFilename(filename);
+        String ct = image.getContentType();
+        if (ct == null || !ct.startsWith("image/")) {
+            throw new IllegalArgumentException("画像ファイルのみアップロード可能です。");
         }
 
+        // 内容のハッシュで保存（同じ写真は既存のファイル・縮小画像を共有する）
+        ContentAddressedUploadStore.Stored stored = uploadStore.store(image);
+        post.setImageFilename(stored.filename());
+        post.setThumbnailFilename(stored.thumbnail());
+        post.setMediumFilename(stored.medium());
+
+        // 保存で diary_post の更新時刻が進み、一覧・個体別一覧のクエリキャッシュは自動で無効になる
         repo.save(post);
+        uploadStore.retain(stored);
+        searchIndex.add(post);
+        diaryStats.record(post);
+        // 一覧・詳細を開いているクライアントへ新着を通知
+        feed.publish(post);
         return "redirect:/posts";
     }
+
+    private boolean isPostable(String pandaName) {
+        if (pandaName == null) return false;
+        return registry.current().postables().stream().anyMatch(p -> pandaName.equals(p.getName()));
+    }
 }
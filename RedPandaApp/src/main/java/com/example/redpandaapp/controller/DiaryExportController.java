@@ -0,0 +1,58 @@
+package com.example.redpandaapp.controller;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import com.example.redpandaapp.service.DiaryExportService;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ * 日記のエクスポート（/posts/export.csv, /posts/export.ndjson）
+ * レスポンスへ直接書き出すので、件数が多くても先頭からすぐに返り始める。
+ */
+@Controller
+@RequestMapping("/posts")
+public class DiaryExportController {
+
+    private final DiaryExportService exportService;
+
+    public DiaryExportController(DiaryExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @GetMapping("/export.csv")
+    public void exportCsv(@RequestParam(name = "pandaName", required = false) String pandaName,
+                          HttpServletResponse response) throws IOException {
+        export(pandaName, DiaryExportService.Format.CSV, "text/csv", "csv", response);
+    }
+
+    @GetMapping("/export.ndjson")
+    public void exportNdjson(@RequestParam(name = "pandaName", required = false) String pandaName,
+                             HttpServletResponse response) throws IOException {
+        export(pandaName, DiaryExportService.Format.NDJSON, "application/x-ndjson", "ndjson", response);
+    }
+
+    private void export(String pandaName, DiaryExportService.Format format, String contentType,
+                        String ext, HttpServletResponse response) throws IOException {
+        response.setContentType(contentType + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"diary-" + LocalDate.now() + "." + ext + "\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+
+        // 長さは分からないので chunked で送る
+        Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        exportService.export(pandaName, format, out);
+        out.flush();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.redpandaapp.controller;
+
+import java.io.IOException;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.redpandaapp.service.DiaryFeedBroadcaster;
+
+/*
+ * 新着日記のライブ配信（SSE）
+ *   /posts/stream                 … すべての新着
+ *   /posts/stream?pandaName=ふうた … その個体の新着のみ
+ */
+@Controller
+public class DiaryFeedController {
+
+    // 接続数が上限のとき、再接続まで待たせる時間（ミリ秒）
+    private static final long BUSY_RETRY_MILLIS = 30_000;
+
+    private final DiaryFeedBroadcaster broadcaster;
+
+    public DiaryFeedController(DiaryFeedBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    @GetMapping(value = "/posts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@RequestParam(name = "pandaName", required = false) String pandaName) {
+        SseEmitter emitter = broadcaster.subscribe(pandaName);
+        if (emitter == null) {
+            // 接続数の上限。EventSource は 200 以外を受けると二度と再接続しない（Retry-After も見ない）ので、
+            // 200 で retry: だけ送ってすぐ閉じる。ブラウザは retry の時間だけ待ってから再接続してくる
+            emitter = new SseEmitter(0L);
+            try {
+                emitter.send(SseEmitter.event().reconnectTime(BUSY_RETRY_MILLIS).comment("busy"));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                // nginx などのプロキシにバッファさせない
+                .header("X-Accel-Buffering", "no")
+                .body(emitter);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.redpandaapp.controller;
+
+import java.io.IOException;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.redpandaapp.service.DiaryExportService;
+import com.example.redpandaapp.service.DiaryImportService;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/*
+ * 日記の一括取り込み（移行・過去分の投入用。app.import.enabled=true のときだけ有効）
+ * 本文をそのまま読みながら登録するので、multipart の上限に関係なく大きなファイルを送れる。
+ *   curl -X POST -H 'Content-Type: text/csv' --data-binary @diary.csv http://localhost:8080/posts/import
+ *   curl -X POST -H 'Content-Type: application/x-ndjson' --data-binary @diary.ndjson http://localhost:8080/posts/import
+ */
+@RestController
+@RequestMapping("/posts")
+@ConditionalOnProperty(name = "app.import.enabled", havingValue = "true")
+public class DiaryImportController {
+
+    private final DiaryImportService importService;
+
+    public DiaryImportController(DiaryImportService importService) {
+        this.importService = importService;
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DiaryImportService.Report> importCsv(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(importService.importPosts(request.getInputStream(), DiaryExportService.Format.CSV));
+    }
+
+    @PostMapping(value = "/import", consumes = "application/x-ndjson", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DiaryImportService.Report> importNdjson(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(importService.importPosts(request.getInputStream(), DiaryExportService.Format.NDJSON));
+    }
+}
@@ -1,25 +1,39 @@
 package com.example.redpandaapp.controller;
 
-import org.springframework.http.ResponseEntity;
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import com.example.redpandaapp.config.StorageConfig;
+import com.example.redpandaapp.service.PandaAssetProxy;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 @Controller
 public class PandaAssetController {
 
     private final StorageConfig storageConfig;
+    private final PandaAssetProxy assetProxy;
+
+    // proxy: ディスクキャッシュ経由で返す / redirect: GCS へ 302
+    @Value("${app.asset.delivery:redirect}")
+    private String delivery = "redirect";
 
-    public PandaAssetController(StorageConfig storageConfig) {
+    public PandaAssetController(StorageConfig storageConfig, PandaAssetProxy assetProxy) {
         this.storageConfig = storageConfig;
+        this.assetProxy = assetProxy;
     }
 
-    // /pandas/以下は全部 GCS へリダイレクト（サブフォルダもOK）
+    // /pandas/以下は全部 GCS から（サブフォルダもOK）
     @GetMapping("/pandas/{path:**}")
-    public ResponseEntity<Void> redirectToGcs(@PathVariable("path") String path) {
+    public void redirectToGcs(@PathVariable("path") String path,
+                              HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
         String bucket = storageConfig.getAssetBucket();
         // 例: https://storage.googleapis.com/<bucket>/<path>
         String gcsBase = "https://storage.googleapis.com/" + bucket;
@@ -29,6 +43,12 @@ public class PandaAssetController {
         for (String seg : path.split("/")) {
             if (!seg.isEmpty()) b.pathSegment(seg);
         }
-        return ResponseEntity.status(302).location(b.build().toUri()).build();
+        String target = b.build().toUri().toASCIIString();
+
+        // 上流に届かないときは従来どおりリダイレクト
+        if ("proxy".equals(delivery) && ProxiedAssets.send(assetProxy, target, request, response)) {
+            return;
+        }
+        response.sendRedirect(target);
     }
 }
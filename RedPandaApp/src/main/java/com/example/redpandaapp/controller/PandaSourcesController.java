@@ -0,0 +1,26 @@
+package com.example.redpandaapp.controller;
+
+import java.util.List;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.redpandaapp.service.RedPandaRegistry;
+
+/*
+ * 個体データの取得元ごとの状態（直近の取得結果・最後に最新を確認した時刻・件数）
+ */
+@RestController
+public class PandaSourcesController {
+
+    private final RedPandaRegistry registry;
+
+    public PandaSourcesController(RedPandaRegistry registry) {
+        this.registry = registry;
+    }
+
+    @GetMapping("/api/redpandas/sources")
+    public List<RedPandaRegistry.SourceStatus> sources() {
+        return registry.sourceStatuses();
+    }
+}
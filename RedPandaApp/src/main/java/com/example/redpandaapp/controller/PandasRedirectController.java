@@ -1,5 +1,6 @@
 package com.example.redpandaapp.controller;
 
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 
@@ -8,17 +9,39 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 
+import com.example.redpandaapp.service.PandaAssetProxy;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
 @Controller
 public class PandasRedirectController {
 
     @Value("${app.asset.base:https://storage.googleapis.com/redpandaapp-202509-assets}")
     private String assetBase;
 
-    // GCS へ飛ばすのは /assets/pandas/** だけ
+    // proxy: ディスクキャッシュ経由で返す / redirect: GCS へ 302
+    @Value("${app.asset.delivery:redirect}")
+    private String delivery = "redirect";
+
+    private final PandaAssetProxy assetProxy;
+
+    public PandasRedirectController(PandaAssetProxy assetProxy) {
+        this.assetProxy = assetProxy;
+    }
+
+    // GCS から返すのは /assets/pandas/** だけ
     @GetMapping("/assets/pandas/{filename:.+}")
-    public String redirect(@PathVariable String filename) {
+    public void redirect(@PathVariable String filename,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
         String enc = URLEncoder.encode(filename, StandardCharsets.UTF_8).replace("+", "%20");
         String target = assetBase + "/pandas/" + enc;
-        return "redirect:" + target;
+
+        // 上流に届かないときは従来どおりリダイレクト
+        if ("proxy".equals(delivery) && ProxiedAssets.send(assetProxy, target, request, response)) {
+            return;
+        }
+        response.sendRedirect(target);
     }
 }
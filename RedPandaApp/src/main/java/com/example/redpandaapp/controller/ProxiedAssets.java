@@ -0,0 +1,90 @@
+package com.example.redpandaapp.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.http.HttpHeaders;
+
+import com.example.redpandaapp.service.PandaAssetProxy;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ * 個体画像をディスクキャッシュ経由で返す（/pandas/** と /assets/pandas/** で共通）
+ */
+final class ProxiedAssets {
+
+    private ProxiedAssets() {}
+
+    /*
+     * 上流 url の画像を response に書く。上流にも手元にも無く返せなかったら false（呼び出し側でリダイレクト）
+     */
+    static boolean send(PandaAssetProxy proxy, String url,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        PandaAssetProxy.Asset asset;
+        FileChannel ch;
+        try {
+            asset = proxy.get(url);
+            if (asset == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return true;
+            }
+            try {
+                ch = FileChannel.open(asset.file(), StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                // 容量超過で削除された直後だった
+                asset = proxy.reload(url);
+                if (asset == null) {
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                    return true;
+                }
+                ch = FileChannel.open(asset.file(), StandardOpenOption.READ);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        try (FileChannel open = ch) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, asset.cacheControl());
+            if (asset.etag() != null) {
+                response.setHeader(HttpHeaders.ETAG, asset.etag());
+                String inm = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+                if (inm != null && matches(inm, asset.etag())) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return true;
+                }
+            }
+            if (asset.contentType() != null) response.setContentType(asset.contentType());
+            response.setContentLengthLong(asset.length());
+            if ("HEAD".equals(request.getMethod())) return true;
+
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long pos = 0;
+            while (pos < asset.length()) {
+                long n = open.transferTo(pos, asset.length() - pos, target);
+                if (n <= 0) break;
+                pos += n;
+            }
+            out.flush();
+            return true;
+        }
+    }
+
+    // If-None-Match は弱い比較（W/ 付きも同一視）
+    private static boolean matches(String header, String etag) {
+        String tag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String t : header.split(",")) {
+            String s = t.trim();
+            if (s.startsWith("W/")) s = s.substring(2);
+            if (s.equals("*") || s.equals(tag)) return true;
+        }
+        return false;
+    }
+}
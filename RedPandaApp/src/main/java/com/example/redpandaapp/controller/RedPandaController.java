@@ -1,50 +1,78 @@
 package com.example.redpandaapp.controller;
 
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.text.Normalizer;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.regex.Pattern;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
 
 import com.example.redpandaapp.model.DiaryPost;
 import com.example.redpandaapp.model.RedPanda;
 import com.example.redpandaapp.repository.DiaryPostRepository;
-import com.example.redpandaapp.service.ExcelImportService;
+import com.example.redpandaapp.repository.PostCursor;
+import com.example.redpandaapp.service.DiaryStatsService;
+import com.example.redpandaapp.service.ImageManifest;
+import com.example.redpandaapp.service.PageConcurrency;
+import com.example.redpandaapp.service.PageScope;
+import com.example.redpandaapp.service.PandaGenealogy;
+import com.example.redpandaapp.service.PandaNameSuggester;
+import com.example.redpandaapp.service.PandaSearchIndex;
+import com.example.redpandaapp.service.RedPandaRegistry;
+import com.example.redpandaapp.service.RemoteFetcher;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Controller
 public class RedPandaController {
 
-    private final ExcelImportService excelImportService;
+    private final RedPandaRegistry registry;
     private final DiaryPostRepository diaryRepo;
-
-    public RedPandaController(ExcelImportService excelImportService,
-                              DiaryPostRepository diaryRepo) {
-        this.excelImportService = excelImportService;
+    private final ImageManifest imageManifest;
+    private final DiaryStatsService diaryStats;
+    private final PageConcurrency pages;
+    private final MeterRegistry meterRegistry;
+    private final RemoteFetcher fetcher;
+    private final RemoteFetcher.Policy probePolicy;
+
+    public RedPandaController(RedPandaRegistry registry,
+                              DiaryPostRepository diaryRepo,
+                              ImageManifest imageManifest,
+                              DiaryStatsService diaryStats,
+                              PageConcurrency pages,
+                              MeterRegistry meterRegistry,
+                              RemoteFetcher fetcher,
+                              @Value("${app.asset.probe-timeout:PT2S}") Duration probeTimeout,
+                              @Value("${app.asset.probe-fresh:PT10M}") Duration probeFresh,
+                              @Value("${app.asset.probe-stale:PT1H}") Duration probeStale) {
+        this.registry = registry;
         this.diaryRepo = diaryRepo;
+        this.imageManifest = imageManifest;
+        this.diaryStats = diaryStats;
+        this.pages = pages;
+        this.meterRegistry = meterRegistry;
+        this.fetcher = fetcher;
+        this.probePolicy = new RemoteFetcher.Policy(probeTimeout, probeFresh, probeStale);
     }
 
     @Value("${app.asset.base:https://storage.googleapis.com/redpandaapp-202509-assets}")
     private String assetBase;
 
-    private static final String EXCEL_URL =
-        "https://ckan.odp.jig.jp/dataset/d62824ca-8b19-4d8f-b81d-7f7cc114f25d/resource/ccc95c6d-e3d0-4dd6-99fb-163704f5ab33/download/-.xlsx";
+    // ETag の接頭辞。版番号は起動ごとに振り直されるため、起動時刻を含めて再起動・再デプロイ後の誤った 304 を防ぐ
+    private static final String BOOT = Long.toString(System.currentTimeMillis(), 36);
 
     // ===== 一覧（カード表示・在園/過去在園・検索・ページング） =====
     @GetMapping("/redpandas")
@@ -52,51 +80,34 @@ public class RedPandaController {
             @RequestParam(name = "q", required = false) String q,
             @RequestParam(name = "page", defaultValue = "0") int page,
             @RequestParam(name = "size", defaultValue = "12") int size,
-            Model model) {
-
-        List<RedPanda> all = excelImportService.loadRedPandas(EXCEL_URL);
-        if (all == null) all = List.of();
-
-        final String qq = (q == null) ? "" : q.trim().toLowerCase();
-        List<RedPanda> filtered = (qq.isEmpty()) ? all : all.stream().filter(p ->
-                contains(p.getName(), qq) || contains(p.getFather(), qq) ||
-                contains(p.getMother(), qq) || contains(p.getFeature(), qq) ||
-                contains(p.getOriginZoo(), qq)
-        ).toList();
-
-        // 在園 / 過去在園 を分け、生年月日降順でソート
-        List<RedPanda> inPark = filtered.stream()
-                .filter(this::isInPark)
-                .sorted(Comparator.comparing(RedPanda::getBirthDate, nullsLastDesc()))
-                .toList();
-
-        List<RedPanda> past = filtered.stream()
-                .filter(p -> !isInPark(p))
-                .sorted(Comparator.comparing(RedPanda::getBirthDate, nullsLastDesc()))
-                .toList();
-
-        // サムネ（最初の1枚）
-        List<PandaCard> inParkCards = inPark.stream()
-                .map(p -> new PandaCard(p, firstImageUrl(p.getName())))
-                .toList();
-        List<PandaCard> pastCards = past.stream()
-                .map(p -> new PandaCard(p, firstImageUrl(p.getName())))
-                .toList();
-
-        // ページング
-        var inParkPaged = paginate(inParkCards, page, size);
-        var pastPaged   = paginate(pastCards, page, size);
+            WebRequest request,
+            Model model) throws InterruptedException {
+
+        // 個体データ・画像索引・日記の集計が変わっていなければ 304
+        RedPandaRegistry.Snapshot snap = registry.current();
+        String etag = "W/\"" + BOOT + "l" + snap.version() + "-" + imageManifest.version()
+                + "-" + diaryStats.version() + "\"";
+        if (request.checkNotModified(etag)) return null;
+
+        // 在園 / 過去在園 に分かれ、生年月日降順に並んだ状態で返る
+        PandaSearchIndex.Result found = snap.searchIndex().search(q);
+        List<RedPanda> inPark = found.inPark();
+        List<RedPanda> past = found.past();
+
+        // ページング（サムネは表示するページの分だけ求める）
+        List<PandaCard> inParkPaged = toCards(paginate(inPark, page, size));
+        List<PandaCard> pastPaged   = toCards(paginate(past, page, size));
 
         model.addAttribute("q", q);
         model.addAttribute("page", page);
         model.addAttribute("size", size);
 
-        model.addAttribute("inParkTotal", inParkCards.size());
-        model.addAttribute("inParkTotalPages", totalPages(inParkCards.size(), size));
+        model.addAttribute("inParkTotal", inPark.size());
+        model.addAttribute("inParkTotalPages", totalPages(inPark.size(), size));
         model.addAttribute("inParkCards", inParkPaged);
 
-        model.addAttribute("pastTotal", pastCards.size());
-        model.addAttribute("pastTotalPages", totalPages(pastCards.size(), size));
+        model.addAttribute("pastTotal", past.size());
+        model.addAttribute("pastTotalPages", totalPages(past.size(), size));
         model.addAttribute("pastCards", pastPaged);
 
         return "redpanda_cards";
@@ -105,49 +116,151 @@ public class RedPandaController {
     // ===== 詳細（画像スライド + 投稿一覧） =====
     @GetMapping("/redpandas/{name}")
     public String detail(@PathVariable("name") String name,
-                         @RequestParam(name="page", defaultValue="0") int page,
+                         @RequestParam(name="cursor", required=false) String cursor,
                          @RequestParam(name="size", defaultValue="5") int size,
-                         Model model) {
+                         WebRequest request,
+                         Model model) throws Exception {
 
-        var all = excelImportService.loadRedPandas(EXCEL_URL);
-        var pandaOpt = (all == null ? Optional.<RedPanda>empty()
-                : all.stream().filter(p -> Objects.equals(p.getName(), name)).findFirst());
+        RedPandaRegistry.Snapshot snap = registry.current();
+        var pandaOpt = snap.find(name);
 
         if (pandaOpt.isEmpty()) {
             model.addAttribute("error", "個体が見つかりませんでした: " + name);
             return "redpanda_detail";
         }
 
+        // 個体データ・画像索引・この個体の最新投稿が変わっていなければ 304
+        String latest = diaryRepo.findFirstByPandaNameOrderByCreatedAtDescIdDesc(name)
+                .map(v -> v.getId() + "-" + v.getCreatedAt())
+                .orElse("0");
+        String etag = "W/\"" + BOOT + "d" + snap.version() + "-" + imageManifest.version() + "-" + latest + "\"";
+        if (request.checkNotModified(etag)) return null;
+
         RedPanda panda = pandaOpt.get();
-        List<String> images = imageUrls(name);
+        if (size <= 0 || size > 100) size = 5;
+        final int limit = size;
+        PostCursor after = PostCursor.decode(cursor);
+
+        // 画像と投稿は独立しているので並行に取得（待ち時間は遅い方の分だけ）
+        List<String> images;
+        Slice<DiaryPost> posts;
+        try (PageScope scope = pages.open()) {
+            var imagesTask = scope.fork(() -> imageUrls(name, "detail"));
+            var postsTask = scope.fork(() -> diaryRepo.findLatestByPandaName(name, after, limit));
+            scope.join();
+
+            // 画像は期限切れならプレースホルダで表示し、投稿の失敗はそのまま例外にする
+            images = imagesTask.getOrElse(List.of());
+            posts = postsTask.get();
+        }
         if (images.isEmpty()) images = List.of("/pandas/placeholder.jpg");
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Page<DiaryPost> posts = diaryRepo.findByPandaName(name, pageable);
-
         model.addAttribute("panda", panda);
         model.addAttribute("images", images);
         model.addAttribute("page", posts);
+        model.addAttribute("cursor", after == null ? null : cursor);
+        model.addAttribute("nextCursor", PostCursor.next(posts));
         model.addAttribute("size", size);
         return "redpanda_detail";
     }
 
-    // ===== helper =====
-    private boolean isInPark(RedPanda p) {
-        return isBlank(p.getDeathDate()) && isBlank(p.getMovedOutDate());
+    // ===== 家系図（祖先・子孫・きょうだい・ペア） =====
+    @GetMapping("/redpandas/{name}/family")
+    public String family(@PathVariable("name") String name,
+                         @RequestParam(name = "depth", defaultValue = "3") int depth,
+                         WebRequest request,
+                         Model model) {
+
+        // 家系図は個体データのスナップショットにだけ依存する
+        RedPandaRegistry.Snapshot snap = registry.current();
+        if (request.checkNotModified("W/\"" + BOOT + "f" + snap.version() + "-" + depth + "\"")) return null;
+
+        var family = snap.genealogy().family(name, clampDepth(depth));
+        if (family.isEmpty()) {
+            model.addAttribute("error", "個体が見つかりませんでした: " + name);
+            return "redpanda_family";
+        }
+
+        model.addAttribute("family", family.get());
+        model.addAttribute("panda", snap.find(family.get().name()).orElse(null));
+        model.addAttribute("depth", clampDepth(depth));
+        return "redpanda_family";
+    }
+
+    @GetMapping(value = "/api/redpandas/{name}/family", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<PandaGenealogy.Family> familyJson(@PathVariable("name") String name,
+                                                            @RequestParam(name = "depth", defaultValue = "3") int depth) {
+        return registry.current().genealogy().family(name, clampDepth(depth))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /*
+     * 個体名の入力補完（検索欄・投稿フォームから1文字ごとに呼ばれる）
+     * scope=postable なら在園個体のみ。スナップショットが変わるまで同じ結果なので短時間キャッシュさせる
+     */
+    @GetMapping(value = "/api/redpandas/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<PandaNameSuggester.Result> suggest(@RequestParam(name = "q", defaultValue = "") String q,
+                                                             @RequestParam(name = "scope", defaultValue = "all") String scope,
+                                                             @RequestParam(name = "limit", defaultValue = "8") int limit) {
+        PandaNameSuggester.Result result = registry.current().suggester()
+                .suggest(q, "postable".equals(scope), limit);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(1)))
+                .body(result);
     }
-    private boolean contains(String s, String qLower) {
-        return s != null && s.toLowerCase().contains(qLower);
+
+    private int clampDepth(int depth) {
+        return Math.max(1, Math.min(depth, 10));
     }
-    private boolean isBlank(String s) { return s == null || s.isBlank(); }
 
-    private static Comparator<String> nullsLastDesc() {
-        return Comparator.nullsLast(Comparator.<String>naturalOrder()).reversed();
+    // ===== helper =====
+    public record PandaCard(RedPanda panda, String thumbUrl, DiaryStatsService.Stats stats) {}
+
+    private List<PandaCard> toCards(List<RedPanda> pandas) throws InterruptedException {
+        if (imageManifest.isReady()) {
+            // 画像索引があればすべてメモリ上で引ける
+            return pandas.stream()
+                    .map(p -> {
+                        DiaryStatsService.Stats stats = diaryStats.get(p.getName());
+                        return new PandaCard(p, cardThumbUrl(p.getName(), stats), stats);
+                    })
+                    .toList();
+        }
+
+        // 画像索引が無いときは HEAD での確認になるので、カードごとに並行に求める
+        try (PageScope scope = pages.open()) {
+            List<PageScope.Subtask<String>> thumbs = new ArrayList<>();
+            for (RedPanda p : pandas) {
+                DiaryStatsService.Stats stats = diaryStats.get(p.getName());
+                thumbs.add(scope.fork(() -> cardThumbUrl(p.getName(), stats)));
+            }
+            scope.join();
+
+            List<PandaCard> cards = new ArrayList<>();
+            for (int i = 0; i < pandas.size(); i++) {
+                RedPanda p = pandas.get(i);
+                cards.add(new PandaCard(p, thumbs.get(i).getOrElse("/pandas/placeholder.jpg"),
+                        diaryStats.get(p.getName())));
+            }
+            return cards;
+        }
     }
 
-    public record PandaCard(RedPanda panda, String thumbUrl) {}
+    // カードのサムネ：画像索引 → 最新の日記写真 → プレースホルダの順
+    // 画像索引が無いときも、日記写真があれば GCS への HEAD はしない
+    private String cardThumbUrl(String name, DiaryStatsService.Stats stats) {
+        if (imageManifest.isReady()) {
+            List<String> urls = imageManifest.imageUrls(name);
+            if (!urls.isEmpty()) return urls.get(0);
+        }
+        if (stats.latestPhoto() != null) return "/images/" + stats.latestPhoto();
+        return imageManifest.isReady() ? "/pandas/placeholder.jpg" : firstImageUrl(name);
+    }
 
-    private List<PandaCard> paginate(List<PandaCard> list, int page, int size) {
+    private List<RedPanda> paginate(List<RedPanda> list, int page, int size) {
         if (size <= 0) size = 12;
         if (page < 0) page = 0;
         int from = Math.min(page * size, list.size());
@@ -159,67 +272,62 @@ public class RedPandaController {
         return (int)Math.ceil((double)total / size);
     }
 
-    // ===== 一覧/詳細の画像候補列挙（GCS に HEAD で存在確認） =====
-    private List<String> imageUrls(String name) {
-        String key = normalizeName(name);
+    // ===== 一覧/詳細の画像候補列挙 =====
+    // 通常は画像マニフェスト（メモリ上の索引）から返す。
+    // バケットの一覧取得ができない場合のみ、従来どおり GCS に HEAD で存在確認する。
+    // endpoint はメトリクスのタグ（list / detail）
+    private List<String> imageUrls(String name, String endpoint) {
+        if (imageManifest.isReady()) {
+            return imageManifest.imageUrls(name);
+        }
 
-        List<String> candidates = new ArrayList<>();
-        String original = name;
-        String asciiLike = key;
-        String[] exts = new String[] { "jpg", "jpeg", "png" };
+        List<String> candidates = ImageManifest.probeCandidates(name);
+        // 1個体の画像を探すのに送った HEAD の数
+        meterRegistry.summary("redpanda.asset.probe.batch", "endpoint", endpoint).record(candidates.size());
 
-        for (String ext : exts) {
-            candidates.add(original + "." + ext);
-            candidates.add(asciiLike + "." + ext);
-        }
-        for (int i = 1; i <= 20; i++) {
-            for (String ext : exts) {
-                candidates.add(original + i + "." + ext);
-                candidates.add(asciiLike + i + "." + ext);
+        // 候補ごとの HEAD は並行に（同時接続数は PageConcurrency で制限）
+        List<String> urls = new ArrayList<>();
+        try (PageScope scope = pages.open()) {
+            List<PageScope.Subtask<Boolean>> exists = new ArrayList<>();
+            for (String fn : candidates) {
+                exists.add(scope.fork(() -> pages.withGcsPermit(() -> existsOnGcs(fn, endpoint))));
             }
-        }
+            scope.join();
 
-        List<String> urls = new ArrayList<>();
-        for (String fn : candidates) {
-            if (existsOnGcs(fn)) {
-                // ← ここを /assets/pandas/ に
-                urls.add("/assets/pandas/" + fn);
+            for (int i = 0; i < candidates.size(); i++) {
+                if (exists.get(i).getOrElse(false)) {
+                    // ← ここを /assets/pandas/ に
+                    urls.add("/assets/pandas/" + candidates.get(i));
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
         return urls.stream().distinct().toList();
     }
 
     private String firstImageUrl(String name) {
-        List<String> all = imageUrls(name);
+        List<String> all = imageUrls(name, "list");
         // ここは静的配信の /pandas/placeholder.jpg を使う
         return all.isEmpty() ? "/pandas/placeholder.jpg" : all.get(0);
     }
 
-    // 名前の正規化（全角→半角/互換正規化・小文字化・空白/記号除去）
-    private static final Pattern DROP = Pattern.compile("[\\p{Punct}\\p{Space}＿　・/（）()［］\\[\\]…‥‐―ー~〜・]+");
-    private String normalizeName(String s) {
-        if (s == null) return "";
-        String nfkc = Normalizer.normalize(s, Normalizer.Form.NFKC);
-        nfkc = nfkc.toLowerCase();
-        nfkc = DROP.matcher(nfkc).replaceAll("");
-        return nfkc;
-    }
-
-    // GCS に HEAD（公開オブジェクト前提）
-    private boolean existsOnGcs(String filename) {
+    // GCS に HEAD（公開オブジェクト前提。RemoteFetcher 経由）。結果（found / missing / error）ごとに時間を記録する
+    private boolean existsOnGcs(String filename, String endpoint) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
         try {
             String enc = URLEncoder.encode(filename, StandardCharsets.UTF_8)
                                     .replace("+", "%20");
-            URL url = new URL(assetBase + "/pandas/" + enc);
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setInstanceFollowRedirects(true);
-            con.setRequestMethod("HEAD");
-            con.setConnectTimeout(2000);
-            con.setReadTimeout(2000);
-            int code = con.getResponseCode();
-            return (code >= 200 && code < 400);
+            // 結果は RemoteFetcher が覚えておき、鮮度切れ後もしばらくは裏で確かめ直しながら使う
+            int code = fetcher.head(assetBase + "/pandas/" + enc, probePolicy).status();
+            boolean found = (code >= 200 && code < 400);
+            outcome = found ? "found" : "missing";
+            return found;
         } catch (Exception e) {
             return false;
+        } finally {
+            sample.stop(meterRegistry.timer("redpanda.asset.probe", "endpoint", endpoint, "outcome", outcome));
         }
     }
 }
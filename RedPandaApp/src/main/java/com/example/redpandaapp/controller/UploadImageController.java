@@ -0,0 +1,207 @@
+package com.example.redpandaapp.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.example.redpandaapp.service.ContentAddressedUploadStore;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ * 投稿画像（/images/**）の配信
+ * ファイル名は内容のハッシュ（以前の投稿はランダム）で内容が変わらないため、immutable で長期キャッシュさせる。
+ * ETag / Last-Modified による条件付きGETと Range（単一範囲）に対応し、
+ * 本文は 48KB 以上で Tomcat の sendfile が使えればカーネル内でコピーさせる（ヒープを経由しないのはこの場合だけ）。
+ * それ以外は FileChannel.transferTo で送るが、送り先がレスポンスのストリームなのでヒープのバッファを経由する。
+ */
+@Controller
+public class UploadImageController {
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    // Tomcat の sendfile を使う最小サイズ（小さいファイルは通常の書き込みの方が速い）
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private final Path uploadPath;
+
+    public UploadImageController(@Value("${app.upload-dir}") String uploadDir) {
+        this.uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    @RequestMapping(value = "/images/{filename:.+}", method = { RequestMethod.GET, RequestMethod.HEAD })
+    public void serve(@PathVariable("filename") String filename,
+                      HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+
+        // ドットで始まる名前（書き込み中の一時ファイルなど）は配信しない
+        Path file = uploadPath.resolve(filename).normalize();
+        if (filename.startsWith(".") || !file.startsWith(uploadPath)
+                || !file.getParent().equals(uploadPath) || !Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis() / 1000 * 1000; // HTTP日付は秒単位
+        // 内容アドレスのファイルはハッシュがそのまま強い ETag（以前のランダム名はサイズと更新時刻）
+        String etag = ContentAddressedUploadStore.etagFor(filename);
+        if (etag == null) {
+            etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        MediaType type = MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        response.setContentType(type.toString());
+
+        // Range（単一範囲のみ。複数範囲は全体を返す）
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request, etag, lastModified)) {
+            long[] r = parseRange(range, length);
+            if (r == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (r.length == 2) {
+                start = r[0];
+                end = r[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        // Tomcat（NIO）の sendfile が使えればカーネル内でコピーさせる
+        if (count >= SENDFILE_MIN_SIZE
+                && Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", file.toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", start);
+            request.setAttribute("org.apache.tomcat.sendfile.end", end + 1);
+            return;
+        }
+
+        // Channels.newChannel(out) はヒープのバッファ経由で書く（ゼロコピーではない）
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long pos = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long n = ch.transferTo(pos, remaining, target);
+                if (n <= 0) break;
+                pos += n;
+                remaining -= n;
+            }
+            out.flush();
+        }
+    }
+
+    /*
+     * If-None-Match を優先し、無ければ If-Modified-Since で判定
+     */
+    private boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String inm = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (inm != null) {
+            return matchesEtag(inm, etag, true);
+        }
+        try {
+            long ims = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return ims != -1 && lastModified <= ims;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // If-Range が無いか、現在の ETag / 日付と一致するときだけ Range を適用する
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return matchesEtag(ifRange, etag, false);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // weak=true なら W/ 付きも同一視（If-None-Match は弱い比較）
+    private boolean matchesEtag(String header, String etag, boolean weak) {
+        for (String tag : header.split(",")) {
+            String t = tag.trim();
+            if (t.equals("*")) return true;
+            if (weak && t.startsWith("W/")) t = t.substring(2);
+            if (t.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /*
+     * "bytes=a-b" / "bytes=a-" / "bytes=-n" を解釈
+     * 戻り値: {start, end}、範囲外なら null、解釈しない（全体を返す）なら空配列
+     */
+    private long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=")) return new long[0];
+        String spec = header.substring("bytes=".length()).trim();
+        if (spec.contains(",")) return new long[0];
+
+        int dash = spec.indexOf('-');
+        if (dash < 0) return new long[0];
+        try {
+            String a = spec.substring(0, dash).trim();
+            String b = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (a.isEmpty()) {
+                // 末尾 n バイト
+                long suffix = Long.parseLong(b);
+                if (suffix <= 0) return null;
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(a);
+                end = b.isEmpty() ? length - 1 : Math.min(Long.parseLong(b), length - 1);
+            }
+            if (start >= length || start > end) return null;
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
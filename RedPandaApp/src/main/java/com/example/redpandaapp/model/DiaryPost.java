@@ -2,29 +2,51 @@ package com.example.redpandaapp.model;
 
 import java.time.LocalDateTime;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 @Entity
+@Table(indexes = {
+        // 一覧（新しい順）と個体別一覧のカーソルページング用
+        @Index(name = "idx_diary_post_created", columnList = "createdAt DESC, id DESC"),
+        @Index(name = "idx_diary_post_panda_created", columnList = "pandaName, createdAt DESC, id DESC")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "diaryPost")
 @Data
 public class DiaryPost {
 
+    // シーケンス採番（50件単位で払い出す pooled）。IDENTITY だと JDBC バッチが効かないため
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "diary_post_seq")
+    @SequenceGenerator(name = "diary_post_seq", sequenceName = "diary_post_seq", allocationSize = 50)
     private Long id;
 
     private String pandaName;
 
     @Column(length = 1000)
     @NotBlank(message = "コメントは必須です。")
+    @Size(max = 1000, message = "コメントは1000文字以内で入力してください。")
     private String comment;
 
     private String imageFilename;
+
+    // 一覧用サムネイル・拡大表示用の中サイズ（生成できなかった場合は null）
+    private String thumbnailFilename;
+    private String mediumFilename;
     
     private LocalDateTime createdAt = LocalDateTime.now();
 
@@ -0,0 +1,66 @@
+package com.example.redpandaapp.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+/*
+ * 内容で名前を付けた投稿画像（同じ写真は1つのファイルを共有する）
+ * refCount は filename を imageFilename に持つ投稿の数。
+ * hash は自分で決める主キーなので、save が merge（読んでから上書き）にならないよう Persistable で新規かどうかを返す。
+ * こうすると同時に最初の保存をしたときは片方が主キー違反になり、呼び出し側で数え直せる。
+ */
+@Entity
+@Data
+public class StoredImage implements Persistable<String> {
+
+    // 内容の SHA-256（16進）
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    // /images/ 配下のファイル名（<hash>.<拡張子>）
+    private String filename;
+
+    private long size;
+
+    private long refCount;
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // DB から読んだ・保存した行なら true
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private boolean persisted;
+
+    @Override
+    public String getId() {
+        return hash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
+
+}
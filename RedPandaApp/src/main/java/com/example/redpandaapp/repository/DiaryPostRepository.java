@@ -1,13 +1,161 @@
 package com.example.redpandaapp.repository;
 
-import org.springframework.data.domain.Page;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.example.redpandaapp.model.DiaryPost;
 
+import jakarta.persistence.QueryHint;
+
 
 public interface DiaryPostRepository extends JpaRepository<DiaryPost, Long> {
-	Page<DiaryPost> findByPandaName(String name, Pageable p);
-	Page<DiaryPost> findByPandaNameContainingIgnoreCase(String q, Pageable pageable);
-}
\ No newline at end of file
+	// 一覧・個体別一覧のクエリキャッシュの領域（投稿が保存されると Hibernate が自動で無効化する）
+	String QUERY_CACHE_REGION = "diaryPostQueries";
+
+	// ===== カーソル（createdAt desc, id desc）によるページング。件数取得なしの Slice で返す =====
+
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+			@QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION) })
+	Slice<DiaryPost> findAllByOrderByCreatedAtDescIdDesc(Pageable p);
+
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+			@QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION) })
+	Slice<DiaryPost> findByPandaNameOrderByCreatedAtDescIdDesc(String name, Pageable p);
+
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+			@QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION) })
+	@Query("select p from DiaryPost p"
+			+ " where p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id)"
+			+ " order by p.createdAt desc, p.id desc")
+	Slice<DiaryPost> findAllBefore(@Param("createdAt") LocalDateTime createdAt,
+			@Param("id") Long id, Pageable p);
+
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+			@QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION) })
+	@Query("select p from DiaryPost p where p.pandaName = :name"
+			+ " and (p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id))"
+			+ " order by p.createdAt desc, p.id desc")
+	Slice<DiaryPost> findByPandaNameBefore(@Param("name") String name,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable p);
+
+	Slice<DiaryPost> findByPandaNameContainingIgnoreCaseOrderByCreatedAtDescIdDesc(String q, Pageable p);
+
+	@Query("select p from DiaryPost p where lower(p.pandaName) like lower(concat('%', :q, '%'))"
+			+ " and (p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id))"
+			+ " order by p.createdAt desc, p.id desc")
+	Slice<DiaryPost> findByPandaNameContainingBefore(@Param("q") String q,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable p);
+
+	// ===== 最新投稿（ページの版の判定用。id と createdAt だけ取得する） =====
+	// ETag の元なのでクエリキャッシュは使わない（キャッシュはインスタンスごとなので、他のインスタンスへの投稿が見えず 304 を返しうる）
+
+	interface PostVersion {
+		Long getId();
+		LocalDateTime getCreatedAt();
+	}
+
+	Optional<PostVersion> findFirstByPandaNameOrderByCreatedAtDescIdDesc(String name);
+
+	// ===== 個体ごとの集計（起動時・取り込み後） =====
+	// before より前の投稿は件数と最新投稿だけを取り、それ以降の投稿は1件ずつ取る（DiaryStatsService.rebuild）
+
+	interface PandaPostStats {
+		String getPandaName();
+		long getPostCount();
+	}
+
+	@Query("select p.pandaName as pandaName, count(p) as postCount from DiaryPost p"
+			+ " where p.createdAt < :before or p.createdAt is null group by p.pandaName")
+	List<PandaPostStats> countByPandaNameBefore(@Param("before") LocalDateTime before);
+
+	// 個体ごとの最新投稿（createdAt が同じものは複数返るので、呼び出し側で id の大きい方を取る）
+	@Query("select p from DiaryPost p where p.createdAt = (select max(q.createdAt) from DiaryPost q"
+			+ " where q.pandaName = p.pandaName and q.createdAt < :before)")
+	List<DiaryPost> findLatestPerPandaBefore(@Param("before") LocalDateTime before);
+
+	List<DiaryPost> findByCreatedAtGreaterThanEqual(LocalDateTime since);
+
+	// ===== エクスポート（古い順に (createdAt, id) のカーソルで1ページずつ。ページごとに短いトランザクションで読む） =====
+	// createdAt は常に入っている（エンティティの既定値。取り込みで空なら既定値のまま）
+
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true"),
+			@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "false") })
+	@Query("select p from DiaryPost p where p.createdAt is not null order by p.createdAt, p.id")
+	List<DiaryPost> findExportFirst(Pageable p);
+
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true"),
+			@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "false") })
+	@Query("select p from DiaryPost p"
+			+ " where p.createdAt > :createdAt or (p.createdAt = :createdAt and p.id > :id)"
+			+ " order by p.createdAt, p.id")
+	List<DiaryPost> findExportAfter(@Param("createdAt") LocalDateTime createdAt,
+			@Param("id") Long id, Pageable p);
+
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true"),
+			@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "false") })
+	@Query("select p from DiaryPost p where p.pandaName = :name and p.createdAt is not null"
+			+ " order by p.createdAt, p.id")
+	List<DiaryPost> findExportFirstByPandaName(@Param("name") String name, Pageable p);
+
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true"),
+			@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "false") })
+	@Query("select p from DiaryPost p where p.pandaName = :name"
+			+ " and (p.createdAt > :createdAt or (p.createdAt = :createdAt and p.id > :id))"
+			+ " order by p.createdAt, p.id")
+	List<DiaryPost> findExportByPandaNameAfter(@Param("name") String name,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable p);
+
+	/*
+	 * 古い順に size 件。cursor が null なら先頭から、pandaName が null なら全個体。
+	 */
+	default List<DiaryPost> findExportPage(String pandaName, PostCursor cursor, int size) {
+		Pageable limit = PageRequest.of(0, size);
+		if (pandaName == null) {
+			return (cursor == null) ? findExportFirst(limit)
+					: findExportAfter(cursor.createdAt(), cursor.id(), limit);
+		}
+		return (cursor == null) ? findExportFirstByPandaName(pandaName, limit)
+				: findExportByPandaNameAfter(pandaName, cursor.createdAt(), cursor.id(), limit);
+	}
+
+	/*
+	 * 新しい順に size 件。cursor が null なら先頭から。
+	 */
+	default Slice<DiaryPost> findLatest(PostCursor cursor, int size) {
+		Pageable limit = PageRequest.of(0, size);
+		return (cursor == null) ? findAllByOrderByCreatedAtDescIdDesc(limit)
+				: findAllBefore(cursor.createdAt(), cursor.id(), limit);
+	}
+
+	// 個体名の完全一致
+	default Slice<DiaryPost> findLatestByPandaName(String name, PostCursor cursor, int size) {
+		Pageable limit = PageRequest.of(0, size);
+		return (cursor == null) ? findByPandaNameOrderByCreatedAtDescIdDesc(name, limit)
+				: findByPandaNameBefore(name, cursor.createdAt(), cursor.id(), limit);
+	}
+
+	// 個体名の部分一致
+	default Slice<DiaryPost> findLatestByPandaNameContaining(String q, PostCursor cursor, int size) {
+		Pageable limit = PageRequest.of(0, size);
+		return (cursor == null) ? findByPandaNameContainingIgnoreCaseOrderByCreatedAtDescIdDesc(q, limit)
+				: findByPandaNameContainingBefore(q, cursor.createdAt(), cursor.id(), limit);
+	}
+}
@@ -0,0 +1,47 @@
+package com.example.redpandaapp.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.data.domain.Slice;
+
+import com.example.redpandaapp.model.DiaryPost;
+
+/*
+ * 投稿一覧のカーソル（createdAt, id）
+ * OFFSET ではなく「このカーソルより古い投稿」を取ることでページが深くなっても速度が落ちない。
+ * URL には Base64（URLセーフ）で埋め込む。
+ */
+public record PostCursor(LocalDateTime createdAt, long id) {
+
+    public static PostCursor of(DiaryPost post) {
+        return new PostCursor(post.getCreatedAt(), post.getId());
+    }
+
+    /** 次ページのカーソル（最後の投稿）。次が無ければ null */
+    public static String next(Slice<DiaryPost> slice) {
+        List<DiaryPost> content = slice.getContent();
+        if (!slice.hasNext() || content.isEmpty()) return null;
+        return of(content.get(content.size() - 1)).encode();
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** 不正な値や空文字は null（先頭ページ扱い） */
+    public static PostCursor decode(String s) {
+        if (s == null || s.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(s), StandardCharsets.UTF_8);
+            int bar = raw.lastIndexOf('|');
+            return new PostCursor(LocalDateTime.parse(raw.substring(0, bar)),
+                    Long.parseLong(raw.substring(bar + 1)));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
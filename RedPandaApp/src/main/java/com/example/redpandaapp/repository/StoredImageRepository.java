@@ -0,0 +1,18 @@
+package com.example.redpandaapp.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.redpandaapp.model.StoredImage;
+
+public interface StoredImageRepository extends JpaRepository<StoredImage, String> {
+
+	// 参照数を1つ増やす（行が無ければ 0 を返す）。読んでから書くと同時投稿で数え漏れるので UPDATE 1回で行う
+	@Modifying
+	@Transactional
+	@Query("update StoredImage s set s.refCount = s.refCount + 1 where s.hash = :hash")
+	int incrementRefCount(@Param("hash") String hash);
+}
@@ -0,0 +1,17 @@
+package com.example.redpandaapp.service;
+
+import java.io.IOException;
+import java.util.List;
+
+/*
+ * 個体画像（pandas/ 配下）のオブジェクト一覧を取得する
+ * 本番は GCS、テストやローカル開発ではディレクトリを使う。
+ */
+public interface AssetLister {
+
+    /** pandas/ 配下のオブジェクト（名前は pandas/ からの相対、サブフォルダは含めない） */
+    List<AssetObject> list() throws IOException;
+
+    /** version はオブジェクトが差し替わったら変わる値（generation / 更新日時など） */
+    record AssetObject(String name, String version) {}
+}
@@ -0,0 +1,184 @@
+package com.example.redpandaapp.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.redpandaapp.model.StoredImage;
+import com.example.redpandaapp.repository.StoredImageRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * 投稿画像の保存（内容アドレス）
+ * アップロードを一時ファイルへ書きながら SHA-256 を計算し、<hash>.<拡張子> へ移動する。
+ * 拡張子は送られてきたファイル名ではなく中身から判定した画像形式で決める（判定できなければ <hash> のみ）。
+ * これで同じ内容は名前によらず必ず1つのファイル・1つの StoredImage 行になる。
+ * 同じ内容が既にあれば書き込みも縮小画像の生成も行わず、既存のファイルを共有する。
+ * 共有数は StoredImage.refCount に持つ（投稿の保存後に retain で数える）。
+ * ファイル名が内容そのものなので、配信では hash をそのまま強い ETag に使える。
+ */
+@Service
+public class ContentAddressedUploadStore {
+
+    // 内容アドレスのファイル名（<hash>、縮小画像は <hash>_t / <hash>_m）
+    private static final Pattern NAME = Pattern.compile("([0-9a-f]{64})(_[tm])?(\\.[a-z0-9]{1,10})?");
+
+    // 書き込み中の一時ファイルを置くディレクトリ（配信されるディレクトリの外。移動を rename で済ませるため同じファイルシステムに作る）
+    private static final String INCOMING = ".incoming";
+
+    // ImageIO の形式名 → 保存する拡張子
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "jpeg", "jpg", "jpg", "jpg", "png", "png", "gif", "gif", "bmp", "bmp", "tiff", "tif", "tif", "tif");
+
+    private final Path dir;
+    private final ImageVariantService imageVariants;
+    private final StoredImageRepository storedImages;
+    private final MeterRegistry meterRegistry;
+
+    public ContentAddressedUploadStore(@Value("${app.upload-dir}") String uploadDir,
+                                       ImageVariantService imageVariants,
+                                       StoredImageRepository storedImages,
+                                       MeterRegistry meterRegistry) {
+        this.dir = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.imageVariants = imageVariants;
+        this.storedImages = storedImages;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** 保存結果（duplicate は既存のファイルを使ったとき） */
+    public record Stored(String hash, String filename, long size, String thumbnail, String medium, boolean duplicate) {}
+
+    /*
+     * アップロードを保存し、縮小画像を用意する
+     */
+    public Stored store(MultipartFile image) throws IOException {
+        Path incoming = Files.createDirectories(dir.resolve(INCOMING));
+
+        // 書き込み途中のファイルが /images/** から見えないよう、配信ディレクトリの外に作る
+        Path tmp = Files.createTempFile(incoming, "upload-", ".tmp");
+        try {
+            MessageDigest sha256 = sha256();
+            long size;
+            Timer.Sample write = Timer.start(meterRegistry);
+            try (InputStream in = image.getInputStream();
+                 OutputStream out = new DigestOutputStream(Files.newOutputStream(tmp), sha256)) {
+                size = in.transferTo(out);
+            } finally {
+                write.stop(meterRegistry.timer("redpanda.upload.write"));
+            }
+            meterRegistry.summary("redpanda.upload.bytes").record(size);
+            String hash = HexFormat.of().formatHex(sha256.digest());
+            String ext = detectExtension(tmp);
+            String filename = (ext == null) ? hash : hash + "." + ext;
+            Path dest = dir.resolve(filename);
+
+            boolean duplicate = Files.exists(dest);
+            if (!duplicate) {
+                try {
+                    Files.move(tmp, dest, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // 同じ写真が同時に投稿された（中身は同じなので先に置かれた方を使う）
+                    duplicate = true;
+                }
+            }
+
+            meterRegistry.counter("redpanda.upload.stored", "duplicate", Boolean.toString(duplicate)).increment();
+
+            ImageVariantService.Variants variants = duplicate ? existingVariants(hash) : null;
+            if (variants == null) {
+                Timer.Sample resize = Timer.start(meterRegistry);
+                try {
+                    variants = imageVariants.createVariants(dest, hash);
+                } finally {
+                    resize.stop(meterRegistry.timer("redpanda.upload.variants"));
+                }
+            }
+            return new Stored(hash, filename, size, variants.thumbnail(), variants.medium(), duplicate);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /*
+     * 投稿1件からの参照を数える（投稿の保存後に呼ぶ）
+     */
+    public void retain(Stored stored) {
+        if (storedImages.incrementRefCount(stored.hash()) > 0) return;
+
+        StoredImage row = new StoredImage();
+        row.setHash(stored.hash());
+        row.setFilename(stored.filename());
+        row.setSize(stored.size());
+        row.setRefCount(1);
+        try {
+            // StoredImage は Persistable なので merge ではなく INSERT になる（同時に作ると片方は主キー違反）
+            storedImages.saveAndFlush(row);
+        } catch (DataIntegrityViolationException e) {
+            // 同じ写真の別の投稿が先に行を作った
+            storedImages.incrementRefCount(stored.hash());
+        }
+    }
+
+    /** 内容アドレスのファイル名なら ETag（"<hash>" / "<hash>_t" など）、そうでなければ null */
+    public static String etagFor(String filename) {
+        var m = NAME.matcher(filename);
+        if (!m.matches()) return null;
+        return "\"" + m.group(1) + (m.group(2) == null ? "" : m.group(2)) + "\"";
+    }
+
+    // 既に作ってある縮小画像（生成済みでなければ null）
+    private ImageVariantService.Variants existingVariants(String hash) {
+        String thumb = hash + "_t.jpg";
+        String medium = hash + "_m.jpg";
+        if (Files.exists(dir.resolve(thumb)) && Files.exists(dir.resolve(medium))) {
+            return new ImageVariantService.Variants(thumb, medium);
+        }
+        return null;
+    }
+
+    // 中身から判定した画像形式の拡張子（ImageIO で判定できない形式は null）
+    private static String detectExtension(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = (in == null) ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                return EXTENSIONS.get(reader.getFormatName().toLowerCase(Locale.ROOT));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.redpandaapp.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.redpandaapp.model.DiaryPost;
+import com.example.redpandaapp.repository.DiaryPostRepository;
+import com.example.redpandaapp.repository.PostCursor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * 日記の一括エクスポート（CSV / NDJSON）
+ * 全件を一度に読まず、(createdAt, id) のカーソルで page-size 件ずつ読んで書き出す。
+ * ページごとに短い読み取り専用トランザクションで読むので、遅いクライアントへの送信中に
+ * DB 接続やカーソルを持ち続けない。読み終えたページは捨てるので、件数によらずヒープ使用量は一定になる。
+ */
+@Service
+public class DiaryExportService {
+
+    // この行数ごとに出力をフラッシュして、先頭からすぐに送り始める
+    private static final int FLUSH_EVERY = 500;
+
+    private static final String[] CSV_HEADER = {
+            "id", "pandaName", "comment", "imageFilename", "thumbnailFilename", "mediumFilename", "createdAt" };
+
+    // 1回のトランザクションで読む件数
+    @Value("${app.export.page-size:500}")
+    private int pageSize = 500;
+
+    private final DiaryPostRepository repo;
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper;
+
+    public DiaryExportService(DiaryPostRepository repo, PlatformTransactionManager txManager,
+                              ObjectMapper objectMapper) {
+        this.repo = repo;
+        this.tx = new TransactionTemplate(txManager);
+        this.tx.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /** 出力形式 */
+    public enum Format { CSV, NDJSON }
+
+    /*
+     * 投稿を古い順に out へ書き出す（pandaName を指定するとその個体のみ）
+     * 戻り値は書き出した件数
+     */
+    public long export(String pandaName, Format format, Writer out) throws IOException {
+        String name = (pandaName == null || pandaName.isBlank()) ? null : pandaName;
+        Iterable<DiaryPost> posts = () -> new PageIterator(name);
+        return (format == Format.CSV) ? writeCsv(posts, out) : writeNdjson(posts, out);
+    }
+
+    private long writeCsv(Iterable<DiaryPost> posts, Writer out) throws IOException {
+        // Excel で開いても文字化けしないよう BOM を付ける
+        out.write('\uFEFF');
+        writeCsvRow(out, CSV_HEADER);
+
+        long count = 0;
+        for (DiaryPost p : posts) {
+            writeCsvRow(out, new String[] {
+                    String.valueOf(p.getId()),
+                    p.getPandaName(),
+                    p.getComment(),
+                    p.getImageFilename(),
+                    p.getThumbnailFilename(),
+                    p.getMediumFilename(),
+                    p.getCreatedAt() == null ? null : p.getCreatedAt().toString() });
+            if (++count % FLUSH_EVERY == 0) out.flush();
+        }
+        out.flush();
+        return count;
+    }
+
+    private long writeNdjson(Iterable<DiaryPost> posts, Writer out) throws IOException {
+        long count = 0;
+        // 出力先はレスポンスなので閉じない。行の区切りは自前で改行を書く（既定の空白区切りにしない）
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setPrettyPrinter(new MinimalPrettyPrinter(""))) {
+            for (DiaryPost p : posts) {
+                json.writeStartObject();
+                json.writeNumberField("id", p.getId());
+                json.writeStringField("pandaName", p.getPandaName());
+                json.writeStringField("comment", p.getComment());
+                json.writeStringField("imageFilename", p.getImageFilename());
+                json.writeStringField("thumbnailFilename", p.getThumbnailFilename());
+                json.writeStringField("mediumFilename", p.getMediumFilename());
+                json.writeStringField("createdAt", p.getCreatedAt() == null ? null : p.getCreatedAt().toString());
+                json.writeEndObject();
+                json.writeRaw('\n');
+                if (++count % FLUSH_EVERY == 0) json.flush();
+            }
+        }
+        out.flush();
+        return count;
+    }
+
+    /*
+     * 1ページずつ読みながら投稿を返す（次のページは前のページの最後の投稿より後から読む）
+     */
+    private final class PageIterator implements Iterator<DiaryPost> {
+        private final String pandaName;
+        private List<DiaryPost> page = List.of();
+        private int next;
+        private PostCursor after;
+        private boolean last;
+
+        PageIterator(String pandaName) {
+            this.pandaName = pandaName;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next < page.size()) return true;
+            if (last) return false;
+
+            PostCursor cursor = after;
+            page = tx.execute(status -> repo.findExportPage(pandaName, cursor, pageSize));
+            next = 0;
+            last = page.size() < pageSize;
+            if (page.isEmpty()) return false;
+            after = PostCursor.of(page.get(page.size() - 1));
+            return true;
+        }
+
+        @Override
+        public DiaryPost next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return page.get(next++);
+        }
+    }
+
+    // RFC 4180 形式（区切り・引用符・改行を含む値は "" で囲む）
+    private static void writeCsvRow(Writer out, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(',');
+            String v = values[i];
+            if (v == null) continue;
+            if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0 || v.indexOf('\n') >= 0 || v.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(v.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(v);
+            }
+        }
+        out.write("\r\n");
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.redpandaapp.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.redpandaapp.model.DiaryPost;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * 新着日記の配信（Server-Sent Events）
+ * 購読は「全体」と「個体ごと」の話題に分かれ、投稿1件を JSON に1回だけ変換して各購読者のキューに積む。
+ * 送信は購読者ごとに仮想スレッドで行うので、遅いクライアントが他の配信を止めることはない。
+ * キューがあふれた購読者（読み取りが追いつかない）は切断し、EventSource の再接続に任せる。
+ * 待機中の接続はスレッドを持たない（非同期リクエスト）ので、数千接続でも保持できる。
+ */
+@Service
+public class DiaryFeedBroadcaster implements DisposableBean {
+
+    // 全体の話題
+    private static final String ALL = "";
+
+    private final ObjectMapper objectMapper;
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Set<Subscriber>> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    @Value("${app.feed.buffer-size:32}")
+    private int bufferSize = 32;
+
+    @Value("${app.feed.max-subscribers:10000}")
+    private int maxSubscribers = 10000;
+
+    @Value("${app.feed.timeout:PT30M}")
+    private Duration timeout = Duration.ofMinutes(30);
+
+    public DiaryFeedBroadcaster(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /** 配信する投稿（画面で必要な項目だけ） */
+    public record FeedEvent(long id, String pandaName, String comment, String thumbnailUrl, String createdAt) {}
+
+    /*
+     * 購読を開始（pandaName が null なら全体）。上限に達していれば null
+     */
+    public SseEmitter subscribe(String pandaName) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+
+        String topic = (pandaName == null || pandaName.isBlank()) ? ALL : pandaName;
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber sub = new Subscriber(topic, emitter, bufferSize);
+        topics.compute(topic, (t, subs) -> {
+            Set<Subscriber> set = (subs != null) ? subs : ConcurrentHashMap.newKeySet();
+            set.add(sub);
+            return set;
+        });
+
+        emitter.onCompletion(() -> remove(sub));
+        emitter.onTimeout(() -> remove(sub));
+        emitter.onError(e -> remove(sub));
+
+        // 接続直後に1件送って、プロキシにヘッダを流させる
+        offer(sub, SseEmitter.event().comment("connected").build());
+        return emitter;
+    }
+
+    /*
+     * 保存済みの投稿を配信（全体と、その個体の購読者へ）
+     */
+    public void publish(DiaryPost post) {
+        if (post.getId() == null) return;
+
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(new FeedEvent(
+                    post.getId(),
+                    post.getPandaName(),
+                    post.getComment(),
+                    thumbnailUrl(post),
+                    post.getCreatedAt() == null ? null : post.getCreatedAt().toString()));
+        } catch (JsonProcessingException e) {
+            return;
+        }
+
+        // 送信内容は1回だけ組み立てて全購読者で共有する（SseEventBuilder は使い回せない）
+        Set<DataWithMediaType> event = SseEmitter.event()
+                .id(String.valueOf(post.getId()))
+                .name("post")
+                .data(json, MediaType.APPLICATION_JSON)
+                .build();
+        fanOut(ALL, event);
+        if (post.getPandaName() != null && !post.getPandaName().isBlank()) {
+            fanOut(post.getPandaName(), event);
+        }
+    }
+
+    /*
+     * 一定間隔でコメント行を送り、切れた接続を検出する（プロキシのアイドル切断も防ぐ）
+     */
+    @Scheduled(fixedDelayString = "${app.feed.heartbeat:PT25S}", initialDelayString = "${app.feed.heartbeat:PT25S}")
+    public void heartbeat() {
+        Set<DataWithMediaType> event = SseEmitter.event().comment("hb").build();
+        for (Set<Subscriber> subs : topics.values()) {
+            for (Subscriber sub : subs) {
+                offer(sub, event);
+            }
+        }
+    }
+
+    /** 購読者数（全話題の合計） */
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void fanOut(String topic, Set<DataWithMediaType> event) {
+        Set<Subscriber> subs = topics.get(topic);
+        if (subs == null) return;
+        for (Subscriber sub : subs) {
+            offer(sub, event);
+        }
+    }
+
+    // キューに積み、送信役が動いていなければ起こす。あふれたら遅い購読者として切断する
+    private void offer(Subscriber sub, Set<DataWithMediaType> event) {
+        if (!sub.queue.offer(event)) {
+            drop(sub);
+            return;
+        }
+        if (sub.sending.compareAndSet(false, true)) {
+            senders.execute(() -> drain(sub));
+        }
+    }
+
+    private void drain(Subscriber sub) {
+        while (true) {
+            Set<DataWithMediaType> event;
+            while ((event = sub.queue.poll()) != null) {
+                try {
+                    sub.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // クライアントが切断済み
+                    drop(sub);
+                    return;
+                }
+            }
+            sub.sending.set(false);
+            // 止めた直後に積まれた分は自分で拾う（他の送信役と二重にならないよう CAS で取り直す）
+            if (sub.queue.isEmpty() || !sub.sending.compareAndSet(false, true)) return;
+        }
+    }
+
+    private void drop(Subscriber sub) {
+        if (remove(sub)) {
+            sub.queue.clear();
+            sub.emitter.complete();
+        }
+    }
+
+    private boolean remove(Subscriber sub) {
+        if (!sub.closed.compareAndSet(false, true)) return false;
+        // 空になった個体の話題は片付ける（購読の追加と同じキーの compute で排他される）
+        topics.computeIfPresent(sub.topic, (t, subs) -> {
+            subs.remove(sub);
+            return (subs.isEmpty() && !ALL.equals(t)) ? null : subs;
+        });
+        subscriberCount.decrementAndGet();
+        return true;
+    }
+
+    private static String thumbnailUrl(DiaryPost p) {
+        String f = p.getThumbnailFilename() != null ? p.getThumbnailFilename() : p.getImageFilename();
+        return f == null ? null : "/images/" + f;
+    }
+
+    @Override
+    public void destroy() {
+        for (Set<Subscriber> subs : topics.values()) {
+            for (Subscriber sub : subs) {
+                drop(sub);
+            }
+        }
+        senders.shutdownNow();
+    }
+
+    /** 購読者1件（送信待ちのキューは上限付き） */
+    private static final class Subscriber {
+        final String topic;
+        final SseEmitter emitter;
+        final BlockingQueue<Set<DataWithMediaType>> queue;
+        final AtomicBoolean sending = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(String topic, SseEmitter emitter, int bufferSize) {
+            this.topic = topic;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
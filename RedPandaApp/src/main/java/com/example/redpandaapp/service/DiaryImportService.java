@@ -0,0 +1,361 @@
+package com.example.redpandaapp.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.redpandaapp.model.DiaryPost;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/*
+ * 日記の一括取り込み（CSV / NDJSON。列・項目名はエクスポートと同じ）
+ * 1行ずつ読んで DiaryPost の制約で検証し、chunk-size 件ごとに1トランザクションで登録する。
+ * 登録は batch-size 件ずつ JDBC バッチで送り、送るたびに永続化コンテキストを空にする。
+ * id は取り込み先で採番し直す（入力の id 列は無視）。
+ */
+@Service
+public class DiaryImportService {
+
+    // 却下した行を報告する上限（件数は全件数える）
+    private static final int MAX_REPORTED_REJECTS = 100;
+
+    private static final DateTimeFormatter DISPLAY_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm[:ss]");
+
+    @Value("${app.import.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${app.import.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate tx;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final DiarySearchIndex searchIndex;
+    private final DiaryStatsService diaryStats;
+
+    public DiaryImportService(EntityManager entityManager, PlatformTransactionManager txManager,
+                              Validator validator, ObjectMapper objectMapper,
+                              DiarySearchIndex searchIndex, DiaryStatsService diaryStats) {
+        this.entityManager = entityManager;
+        this.tx = new TransactionTemplate(txManager);
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.searchIndex = searchIndex;
+        this.diaryStats = diaryStats;
+    }
+
+    /** 却下した行（line は入力の行番号。CSV は見出しを1行目と数える） */
+    public record Rejected(long line, String reason) {}
+
+    /** 取り込み結果 */
+    public record Report(long read,
+                         long imported,
+                         long rejected,
+                         List<Rejected> rejects,
+                         long elapsedMillis,
+                         double rowsPerSecond) {}
+
+    public Report importPosts(InputStream in, DiaryExportService.Format format) throws IOException {
+        long started = System.nanoTime();
+        Counts counts = new Counts();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Iterator<Row> rows = (format == DiaryExportService.Format.CSV) ? new CsvRows(reader) : new NdjsonRows(reader);
+
+        List<DiaryPost> chunk = new ArrayList<>(chunkSize);
+        List<Long> lines = new ArrayList<>(chunkSize);
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            counts.read++;
+            String error = row.error();
+            DiaryPost post = null;
+            if (error == null) {
+                post = new DiaryPost();
+                error = fill(post, row.values());
+            }
+            if (error != null) {
+                counts.reject(row.line(), error);
+                continue;
+            }
+
+            chunk.add(post);
+            lines.add(row.line());
+            if (chunk.size() == chunkSize) {
+                persistChunk(chunk, lines, counts);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            persistChunk(chunk, lines, counts);
+        }
+
+        // 古い投稿が途中に入るので、検索インデックスと集計は作り直す
+        if (counts.imported > 0) {
+            searchIndex.rebuild();
+            diaryStats.rebuild();
+        }
+
+        long elapsed = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        return new Report(counts.read, counts.imported, counts.rejected, List.copyOf(counts.rejects),
+                elapsed, counts.imported * 1000.0 / elapsed);
+    }
+
+    /*
+     * 1チャンクを1トランザクションで登録。失敗したらそのチャンクの行はすべて却下として報告する。
+     */
+    private void persistChunk(List<DiaryPost> chunk, List<Long> lines, Counts counts) {
+        try {
+            tx.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                for (int i = 0; i < chunk.size(); i++) {
+                    entityManager.persist(chunk.get(i));
+                    if ((i + 1) % batchSize == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+            counts.imported += chunk.size();
+        } catch (RuntimeException e) {
+            String reason = "登録に失敗しました: " + rootMessage(e);
+            for (Long line : lines) {
+                counts.reject(line, reason);
+            }
+        } finally {
+            chunk.clear();
+            lines.clear();
+        }
+    }
+
+    // 入力の1行を投稿に詰めて検証（問題なければ null）
+    private String fill(DiaryPost post, Map<String, String> v) {
+        post.setPandaName(blankToNull(v.get("pandaName")));
+        post.setComment(v.get("comment"));
+        post.setImageFilename(blankToNull(v.get("imageFilename")));
+        post.setThumbnailFilename(blankToNull(v.get("thumbnailFilename")));
+        post.setMediumFilename(blankToNull(v.get("mediumFilename")));
+
+        String createdAt = blankToNull(v.get("createdAt"));
+        if (createdAt != null) {
+            try {
+                post.setCreatedAt(parseDateTime(createdAt));
+            } catch (DateTimeParseException e) {
+                return "createdAt の形式が不正です: " + createdAt;
+            }
+        }
+
+        var violations = validator.validate(post);
+        if (violations.isEmpty()) return null;
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(" / "));
+    }
+
+    // エクスポートの ISO 形式と画面表示の yyyy/MM/dd HH:mm を受け付ける
+    private static LocalDateTime parseDateTime(String s) {
+        try {
+            return LocalDateTime.parse(s);
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(s, DISPLAY_FORMAT);
+        }
+    }
+
+    private static String blankToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable t = e;
+        while (t.getCause() != null && t.getCause() != t) t = t.getCause();
+        return t.getMessage() == null ? t.getClass().getSimpleName() : t.getMessage();
+    }
+
+    private static final class Counts {
+        long read;
+        long imported;
+        long rejected;
+        final List<Rejected> rejects = new ArrayList<>();
+
+        void reject(long line, String reason) {
+            rejected++;
+            if (rejects.size() < MAX_REPORTED_REJECTS) rejects.add(new Rejected(line, reason));
+        }
+    }
+
+    // ===== 入力の読み取り（1行ずつ。全件をメモリに載せない） =====
+
+    /** 入力の1行（読めなかった行は error に理由） */
+    private record Row(long line, Map<String, String> values, String error) {}
+
+    /*
+     * RFC 4180 の CSV（"" で囲んだ値の中の改行・引用符に対応）。1行目は見出し。
+     */
+    private static final class CsvRows implements Iterator<Row> {
+        private final BufferedReader reader;
+        private final String[] header;
+        // 読み終えた行数
+        private long line;
+        private Row next;
+
+        CsvRows(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> h = readRecord();
+            if (h != null && !h.isEmpty() && h.get(0).startsWith("\uFEFF")) {
+                h.set(0, h.get(0).substring(1));
+            }
+            this.header = (h == null) ? new String[0] : h.stream().map(String::trim).toArray(String[]::new);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) return true;
+            try {
+                long start = line + 1;
+                List<String> record = readRecord();
+                // 空行は読み飛ばす
+                while (record != null && record.size() == 1 && record.get(0).isEmpty()) {
+                    start = line + 1;
+                    record = readRecord();
+                }
+                if (record == null) return false;
+                if (record.size() != header.length) {
+                    next = new Row(start, Map.of(), "列の数が見出しと一致しません（" + record.size() + "列）");
+                } else {
+                    Map<String, String> values = new HashMap<>();
+                    for (int i = 0; i < header.length; i++) values.put(header[i], record.get(i));
+                    next = new Row(start, values, null);
+                }
+                return true;
+            } catch (IOException e) {
+                throw new IllegalStateException("CSV の読み込みに失敗しました", e);
+            }
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Row r = next;
+            next = null;
+            return r;
+        }
+
+        // 1レコード分を読む（入力の終わりなら null）
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c < 0) return null;
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder sb = new StringBuilder();
+            boolean quoted = false;
+            while (c >= 0) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int d = reader.read();
+                        if (d == '"') {
+                            sb.append('"');
+                        } else {
+                            quoted = false;
+                            if (d >= 0) reader.reset();
+                        }
+                    } else {
+                        if (c == '\n') line++;
+                        sb.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(sb.toString());
+                    sb.setLength(0);
+                } else if (c == '\r') {
+                    // \r\n の \r は読み捨てる
+                } else if (c == '\n') {
+                    line++;
+                    break;
+                } else {
+                    sb.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(sb.toString());
+            return fields;
+        }
+    }
+
+    /*
+     * 1行1オブジェクトの JSON
+     */
+    private final class NdjsonRows implements Iterator<Row> {
+        private final BufferedReader reader;
+        private long line;
+        private Row next;
+
+        NdjsonRows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) return true;
+            try {
+                String s;
+                do {
+                    s = reader.readLine();
+                    line++;
+                } while (s != null && s.isBlank());
+                if (s == null) return false;
+
+                try {
+                    JsonNode node = objectMapper.readTree(s);
+                    if (!node.isObject()) {
+                        next = new Row(line, Map.of(), "JSON オブジェクトではありません");
+                    } else {
+                        Map<String, String> values = new HashMap<>();
+                        node.fields().forEachRemaining(e ->
+                                values.put(e.getKey(), e.getValue().isNull() ? null : e.getValue().asText()));
+                        next = new Row(line, values, null);
+                    }
+                } catch (IOException e) {
+                    next = new Row(line, Map.of(), "JSON として読めません");
+                }
+                return true;
+            } catch (IOException e) {
+                throw new IllegalStateException("NDJSON の読み込みに失敗しました", e);
+            }
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Row r = next;
+            next = null;
+            return r;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.redpandaapp.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import com.example.redpandaapp.model.DiaryPost;
+import com.example.redpandaapp.repository.DiaryPostRepository;
+
+/*
+ * 日記の全文検索インデックス（組み込み・外部サービスなし）
+ * 個体名とコメントを NameNormalizer と同じ規則で正規化し、文字バイグラムの転置インデックスを作る。
+ * 日本語は単語区切りがないため形態素ではなく n-gram にしている。
+ * 文書番号は投稿の古い順に振るので、番号の大きい方から見れば新しい順になる。
+ */
+@Service
+public class DiarySearchIndex {
+
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final DiaryPostRepository repo;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 文書番号 → 投稿ID / 正規化テキスト
+    private long[] postIds = new long[256];
+    private final List<String> texts = new ArrayList<>();
+    private final Map<Long, Integer> docByPostId = new HashMap<>();
+    // バイグラム → 文書番号（昇順）
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    private volatile boolean ready;
+
+    public DiarySearchIndex(DiaryPostRepository repo) {
+        this.repo = repo;
+    }
+
+    /** 検索結果（新しい順の投稿ID） */
+    public record Hits(List<Long> postIds, boolean hasNext) {}
+
+    /*
+     * 起動時に全投稿から作成（以降は投稿時に add で追記）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            // 読込中に投稿された分を取りこぼさないよう、ロックを取ってから読む
+            List<DiaryPost> all = repo.findAll(Sort.by("createdAt", "id"));
+            postIds = new long[Math.max(256, all.size() * 2)];
+            texts.clear();
+            docByPostId.clear();
+            postings.clear();
+            for (DiaryPost p : all) {
+                addLocked(p);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void add(DiaryPost post) {
+        if (post.getId() == null) return;
+        lock.writeLock().lock();
+        try {
+            addLocked(post);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addLocked(DiaryPost post) {
+        if (docByPostId.containsKey(post.getId())) return;
+
+        int doc = texts.size();
+        if (doc == postIds.length) postIds = Arrays.copyOf(postIds, doc * 2);
+        postIds[doc] = post.getId();
+
+        String text = NameNormalizer.normalizeName(post.getPandaName())
+                + FIELD_SEPARATOR
+                + NameNormalizer.normalizeName(post.getComment());
+        texts.add(text);
+        docByPostId.put(post.getId(), doc);
+
+        for (String gram : bigrams(text)) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(doc);
+        }
+    }
+
+    /*
+     * q を含む投稿を新しい順に size 件（beforePostId を指定するとその投稿より古いもの）
+     */
+    public Hits search(String q, Long beforePostId, int size) {
+        String query = NameNormalizer.normalizeName(q);
+        if (query.isEmpty()) return new Hits(List.of(), false);
+
+        lock.readLock().lock();
+        try {
+            int from = texts.size() - 1;
+            if (beforePostId != null) {
+                Integer doc = docByPostId.get(beforePostId);
+                if (doc == null) return new Hits(List.of(), false);
+                from = doc - 1;
+            }
+
+            List<Long> hits = new ArrayList<>(size);
+            if (query.length() == 1) {
+                // 1文字はバイグラムが作れないので走査
+                for (int d = from; d >= 0; d--) {
+                    if (texts.get(d).indexOf(query.charAt(0)) >= 0) {
+                        if (hits.size() == size) return new Hits(hits, true);
+                        hits.add(postIds[d]);
+                    }
+                }
+                return new Hits(hits, false);
+            }
+
+            // 出現数の少ないバイグラムから照合し、最後に部分文字列として確認する
+            List<Postings> lists = new ArrayList<>();
+            for (String gram : bigrams(query)) {
+                Postings p = postings.get(gram);
+                if (p == null) return new Hits(List.of(), false);
+                lists.add(p);
+            }
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+            Postings rarest = lists.get(0);
+            int i = rarest.lastIndexAtMost(from);
+            for (; i >= 0; i--) {
+                int d = rarest.docs[i];
+                if (!containsAll(lists, d)) continue;
+                if (!texts.get(d).contains(query)) continue;
+                if (hits.size() == size) return new Hits(hits, true);
+                hits.add(postIds[d]);
+            }
+            return new Hits(hits, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean containsAll(List<Postings> lists, int doc) {
+        for (int k = 1; k < lists.size(); k++) {
+            if (!lists.get(k).contains(doc)) return false;
+        }
+        return true;
+    }
+
+    private static Set<String> bigrams(String s) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 1 < s.length(); i++) {
+            char a = s.charAt(i);
+            char b = s.charAt(i + 1);
+            if (a == FIELD_SEPARATOR || b == FIELD_SEPARATOR) continue;
+            grams.add(new String(new char[] { a, b }));
+        }
+        return grams;
+    }
+
+    /*
+     * 文書番号の昇順リスト（追記のみ）
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) return;
+            if (size == docs.length) docs = Arrays.copyOf(docs, size * 2);
+            docs[size++] = doc;
+        }
+
+        boolean contains(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc) >= 0;
+        }
+
+        // doc 以下で最大の要素の位置（無ければ -1）
+        int lastIndexAtMost(int doc) {
+            int i = Arrays.binarySearch(docs, 0, size, doc);
+            return (i >= 0) ? i : -i - 2;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.redpandaapp.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.redpandaapp.model.DiaryPost;
+import com.example.redpandaapp.repository.DiaryPostRepository;
+
+/*
+ * 個体ごとの日記の集計（投稿数・最新投稿日時・最新写真）
+ * 起動時（と一括取り込みの後）に DB から作り直し、以降は投稿のたびに加算する。
+ * カード一覧からは個体名で O(1) で引ける。
+ * 最新投稿は createdAt（同時刻は id）で決める。取り込んだ過去の投稿は id が新しくても古い投稿として扱う。
+ */
+@Service
+public class DiaryStatsService {
+
+    // 作り直しのとき、この時間より新しい投稿は1件ずつ読んで id を覚えておく（record との二重計上を防ぐ）
+    // 投稿の createdAt はフォームの受信時に決まるので、保存までにかかる時間より十分長くする
+    static final Duration RECENT = Duration.ofMinutes(10);
+
+    private final DiaryPostRepository repo;
+    private final Map<String, Stats> byPanda = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    // 作り直しは1本ずつ（起動時と取り込み後が重なりうる）。集計の差し替えと record は synchronized で守る
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    // 直近の作り直しで数えた、新しい投稿の id
+    private Set<Long> counted = Set.of();
+    // 作り直しの間に来た record（作り直しの結果に足す）
+    private List<DiaryPost> pending;
+
+    public DiaryStatsService(DiaryPostRepository repo) {
+        this.repo = repo;
+    }
+
+    /** 個体ごとの集計（photo はサムネイル優先の /images/ 配下のファイル名） */
+    public record Stats(long postCount, LocalDateTime latestPostAt, Long latestPostId, String latestPhoto) {
+
+        public static final Stats EMPTY = new Stats(0, null, null, null);
+
+        Stats plus(DiaryPost post) {
+            return newer(post)
+                    ? new Stats(postCount + 1, post.getCreatedAt(), post.getId(), photoOf(post))
+                    : new Stats(postCount + 1, latestPostAt, latestPostId, latestPhoto);
+        }
+
+        // (createdAt, id) の順で新しいか（createdAt が無い投稿は最も古い扱い）
+        boolean newer(DiaryPost post) {
+            if (latestPostId == null) return true;
+            if (post.getCreatedAt() == null) return latestPostAt == null && post.getId() > latestPostId;
+            if (latestPostAt == null) return true;
+            int c = post.getCreatedAt().compareTo(latestPostAt);
+            return c > 0 || (c == 0 && post.getId() > latestPostId);
+        }
+    }
+
+    /*
+     * DB から作り直す
+     * RECENT より前の投稿は GROUP BY と個体ごとの最新投稿だけ、それ以降の投稿は1件ずつ読む。
+     * 作り直し中に保存された投稿の record は待たせておき、作り直しで数えていなければ後から足す。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+            LocalDateTime since = LocalDateTime.now().minus(RECENT);
+
+            Map<String, Stats> next = new HashMap<>();
+            for (DiaryPostRepository.PandaPostStats r : repo.countByPandaNameBefore(since)) {
+                if (r.getPandaName() == null) continue;
+                next.put(r.getPandaName(), new Stats(r.getPostCount(), null, null, null));
+            }
+            for (DiaryPost p : repo.findLatestPerPandaBefore(since)) {
+                Stats cur = next.get(p.getPandaName());
+                if (cur != null && cur.newer(p)) {
+                    next.put(p.getPandaName(), new Stats(cur.postCount(), p.getCreatedAt(), p.getId(), photoOf(p)));
+                }
+            }
+            // 新しい投稿は後から読むので、この間に保存された投稿もここで数えられる（id を覚えて record を読み飛ばす）
+            Set<Long> recent = new HashSet<>();
+            for (DiaryPost p : repo.findByCreatedAtGreaterThanEqual(since)) {
+                recent.add(p.getId());
+                if (p.getPandaName() != null) next.merge(p.getPandaName(), Stats.EMPTY.plus(p), (cur, one) -> cur.plus(p));
+            }
+
+            synchronized (this) {
+                for (DiaryPost p : pending) {
+                    if (recent.add(p.getId())) {
+                        next.merge(p.getPandaName(), Stats.EMPTY.plus(p), (cur, one) -> cur.plus(p));
+                    }
+                }
+                pending = null;
+                counted = recent;
+                byPanda.clear();
+                byPanda.putAll(next);
+                versions.incrementAndGet();
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /*
+     * 投稿保存後に呼ぶ
+     */
+    public synchronized void record(DiaryPost post) {
+        if (post.getPandaName() == null || post.getId() == null) return;
+        if (pending != null) {
+            pending.add(post);
+            return;
+        }
+        // 作り直しで既に数えた投稿
+        if (counted.contains(post.getId())) return;
+        byPanda.merge(post.getPandaName(), Stats.EMPTY.plus(post), (cur, one) -> cur.plus(post));
+        versions.incrementAndGet();
+    }
+
+    public Stats get(String pandaName) {
+        return pandaName == null ? Stats.EMPTY : byPanda.getOrDefault(pandaName, Stats.EMPTY);
+    }
+
+    /** 集計の版（投稿があるたびに変わる） */
+    public long version() {
+        return versions.get();
+    }
+
+    private static String photoOf(DiaryPost p) {
+        return p.getThumbnailFilename() != null ? p.getThumbnailFilename() : p.getImageFilename();
+    }
+}
@@ -1,8 +1,6 @@
 package com.example.redpandaapp.service;
 
 import java.io.InputStream;
-import java.net.URL;
-import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
@@ -18,83 +16,145 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.example.redpandaapp.model.RedPanda;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 @Service
 public class ExcelImportService {
 
-    public List<RedPanda> loadRedPandas(String urlStr) {
-        List<RedPanda> pandaList = new ArrayList<>();
+    // streaming（SAX）または dom
+    @Value("${app.redpanda.parser:streaming}")
+    private String parserMode = "streaming";
 
-        try (InputStream is = new URL(urlStr).openStream()) {
-            pandaList = parseExcel(is);
-        } catch (Exception e) {
-            // ネットワーク失敗時は resources 配下のバックアップExcelを読み込む
-            try (InputStream fallback = getClass().getResourceAsStream("/redpandas_backup.xlsx")) {
-                pandaList = parseExcel(fallback);
-            } catch (Exception ex) {
-                ex.printStackTrace();
+    private final MeterRegistry meterRegistry;
+
+    public ExcelImportService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /*
+     * バックアップの個体データを取得
+     * ビルド時に変換した二進形式（PandaDatasetCodec）があれば POI を使わずに読み、
+     * 無ければ（IDE から直接起動した場合など）従来どおりバックアップExcelを読む。
+     */
+    public List<RedPanda> loadBackup() throws Exception {
+        try (InputStream compiled = getClass().getResourceAsStream(PandaDatasetCodec.RESOURCE)) {
+            if (compiled != null) {
+                return PandaDatasetCodec.read(compiled);
             }
         }
-
-        return pandaList;
+        try (InputStream fallback = getClass().getResourceAsStream("/redpandas_backup.xlsx")) {
+            return parseExcel(fallback);
+        }
     }
     
     /*
      * レッサーパンダ一覧を取得
+     * 既定はストリーミング（SAX）読込。app.redpanda.parser=dom で従来の XSSFWorkbook 読込に戻せる。
      */
-    private List<RedPanda> parseExcel(InputStream inputStream) throws Exception {
-        List<RedPanda> list = new ArrayList<>();
-        Workbook workbook = new XSSFWorkbook(inputStream);
-        Sheet sheet = workbook.getSheetAt(0);
-
-        for (int i = 2; i <= sheet.getLastRowNum()-1; i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
-
-            RedPanda panda = new RedPanda();
-
-            panda.setName(getCellValue(row.getCell(0)));
-            panda.setGender(getCellValue(row.getCell(1)));
-            panda.setBirthDate(formatDateCell(row.getCell(2)));
-            panda.setDeathDate(formatDateCell(row.getCell(3)));
-            panda.setAge(calculateAge(panda.getBirthDate(), panda.getDeathDate()));
-            panda.setMovedOutDate(formatDateCell(row.getCell(5)));
-            panda.setMovedOutZoo(getCellValue(row.getCell(6)));
-            panda.setArrivalDate(formatDateCell(row.getCell(7)));
-            panda.setOriginZoo(getCellValue(row.getCell(8)));
-            panda.setFather(getCellValue(row.getCell(9)));
-            panda.setMother(getCellValue(row.getCell(10)));
-            panda.setPair1(getCellValue(row.getCell(11)));
-            panda.setPair2(getCellValue(row.getCell(12)));
-            panda.setPair3(getCellValue(row.getCell(13)));
-            panda.setPersonality(getCellValue(row.getCell(14)));
-            panda.setFeature(getCellValue(row.getCell(15)));
-
-            list.add(panda);
+    public List<RedPanda> parseExcel(InputStream inputStream) throws Exception {
+        boolean dom = "dom".equalsIgnoreCase(parserMode);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            List<RedPanda> list = dom ? parseExcelDom(inputStream) : new ExcelStreamingParser().parse(inputStream);
+            outcome = "success";
+            return list;
+        } finally {
+            // 読込時間（入力がネットワークの場合は受信の待ちも含む）
+            sample.stop(Timer.builder("redpanda.excel.parse")
+                    .tag("parser", dom ? "dom" : "streaming")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
         }
+    }
+
+    /*
+     * バックアップの個体データに切り替えたことを数える（reason: cold_start / fetch_failed）
+     */
+    static void countBackupFallback(MeterRegistry meterRegistry, String reason) {
+        meterRegistry.counter("redpanda.backup.fallback", "reason", reason).increment();
+    }
 
-        workbook.close();
+    /*
+     * XSSFWorkbook（DOM）で一覧を取得
+     */
+    List<RedPanda> parseExcelDom(InputStream inputStream) throws Exception {
+        List<RedPanda> list = new ArrayList<>();
+        try (Workbook workbook = new XSSFWorkbook(inputStream)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            // 数式評価器はブック単位で1つだけ作る
+            FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+
+            for (int i = 2; i <= sheet.getLastRowNum()-1; i++) {
+                Row row = sheet.getRow(i);
+                if (row == null) continue;
+
+                String[] cols = new String[COLUMN_COUNT];
+                for (int c = 0; c < COLUMN_COUNT; c++) {
+                    if (c == AGE_COLUMN) continue; // 年齢は生年月日から計算する
+                    cols[c] = isDateColumn(c)
+                            ? formatDateCell(row.getCell(c), evaluator)
+                            : getCellValue(row.getCell(c), evaluator);
+                }
+                list.add(toRedPanda(cols));
+            }
+        }
         return list;
     }
 
-    private String getCellValue(Cell cell) {
+    // ===== 列マッピング（0〜15列目） =====
+    static final int COLUMN_COUNT = 16;
+    static final int AGE_COLUMN = 4;
+
+    static boolean isDateColumn(int c) {
+        return c == 2 || c == 3 || c == 5 || c == 7;
+    }
+
+    static RedPanda toRedPanda(String[] cols) {
+        RedPanda panda = new RedPanda();
+
+        panda.setName(cols[0]);
+        panda.setGender(cols[1]);
+        panda.setBirthDate(cols[2]);
+        panda.setDeathDate(cols[3]);
+        panda.setAge(calculateAge(panda.getBirthDate(), panda.getDeathDate()));
+        panda.setMovedOutDate(cols[5]);
+        panda.setMovedOutZoo(cols[6]);
+        panda.setArrivalDate(cols[7]);
+        panda.setOriginZoo(cols[8]);
+        panda.setFather(cols[9]);
+        panda.setMother(cols[10]);
+        panda.setPair1(cols[11]);
+        panda.setPair2(cols[12]);
+        panda.setPair3(cols[13]);
+        panda.setPersonality(cols[14]);
+        panda.setFeature(cols[15]);
+
+        return panda;
+    }
+
+    // 日付表示（java.time はスレッドセーフなので共有する）
+    static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+    // Excelのシリアル値を yyyy/MM/dd に変換
+    static String formatSerialDate(double serial) {
+        return DateUtil.getLocalDateTime(serial).format(DATE_FORMAT);
+    }
+
+    private String getCellValue(Cell cell, FormulaEvaluator evaluator) {
         if (cell == null) return "";
 
         return switch (cell.getCellType()) {
             case STRING -> cell.getStringCellValue();
-            case NUMERIC -> {
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    yield new SimpleDateFormat("yyyy/MM/dd").format(cell.getDateCellValue());
-                } else {
-                    // Excelのシリアル値も日付として変換を試みる
-                    yield new SimpleDateFormat("yyyy/MM/dd").format(DateUtil.getJavaDate(cell.getNumericCellValue()));
-                }
-            }
+            // 日付書式でなくても Excelのシリアル値として日付に変換する
+            case NUMERIC -> formatSerialDate(cell.getNumericCellValue());
             case FORMULA -> {
-                FormulaEvaluator evaluator = cell.getSheet().getWorkbook().getCreationHelper().createFormulaEvaluator();
                 CellValue value = evaluator.evaluate(cell);
                 if (value.getCellType() == CellType.NUMERIC) {
                     yield String.valueOf(value.getNumberValue());
@@ -106,7 +166,7 @@ public class ExcelImportService {
         };
     }
 
-    private String formatDateCell(Cell cell) {
+    String formatDateCell(Cell cell, FormulaEvaluator evaluator) {
         if (cell == null || cell.getCellType() == CellType.BLANK) return "";
 
         try {
@@ -116,24 +176,23 @@ public class ExcelImportService {
                 // 0 は "1899/12/31" になってしまうため排除
                 if (numericValue == 0.0) return "";
 
-                return new SimpleDateFormat("yyyy/MM/dd").format(DateUtil.getJavaDate(numericValue));
+                return formatSerialDate(numericValue);
             }
 
             // 日付以外の文字列も考慮して fallback
-            return getCellValue(cell);
+            return getCellValue(cell, evaluator);
         } catch (Exception e) {
             return "";
         }
     }
 
 
-    private String calculateAge(String birthDateStr, String deathDateStr) {
+    static String calculateAge(String birthDateStr, String deathDateStr) {
         try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
-            LocalDate birthDate = LocalDate.parse(birthDateStr, formatter);
+            LocalDate birthDate = LocalDate.parse(birthDateStr, DATE_FORMAT);
             LocalDate endDate = (deathDateStr == null || deathDateStr.isBlank())
                     ? LocalDate.now()
-                    : LocalDate.parse(deathDateStr, formatter);
+                    : LocalDate.parse(deathDateStr, DATE_FORMAT);
 
             long years = ChronoUnit.YEARS.between(birthDate, endDate);
             return years + "歳";
@@ -141,20 +200,5 @@ public class ExcelImportService {
             return "";
         }
     }
-    
-    /*
-     * 在園中のレッサーパンダ一覧を取得
-     */
-    public List<RedPanda> loadPostableRedPandas(String urlStr) {
-        List<RedPanda> all = loadRedPandas(urlStr);
-        return all.stream()
-                .filter(p -> isBlank(p.getDeathDate()))     // 死亡日なし
-                .filter(p -> isBlank(p.getMovedOutDate()))  // 他園移動日なし
-                .toList();
-    }
-
-    private boolean isBlank(String s) {
-        return s == null || s.trim().isEmpty();
-    }
 
 }
@@ -0,0 +1,201 @@
+package com.example.redpandaapp.service;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.example.redpandaapp.model.RedPanda;
+
+/*
+ * Excel（xlsx）のストリーミング読込
+ * XSSFWorkbook を組み立てず、シートXMLを SAX で1行ずつ読んで RedPanda を生成する。
+ * メモリに持つのは共有文字列テーブルと処理中の2行分だけ。
+ * 列マッピング・値の変換規則は ExcelImportService（DOM版）と同じ。
+ */
+public class ExcelStreamingParser {
+
+    public List<RedPanda> parse(InputStream inputStream) throws Exception {
+        List<RedPanda> list = new ArrayList<>();
+        parse(inputStream, list::add);
+        return list;
+    }
+
+    /*
+     * 1行ごとに sink へ渡す（一覧を溜めずに処理したい場合用）
+     */
+    public void parse(InputStream inputStream, Consumer<RedPanda> sink) throws Exception {
+        // OPCPackage に InputStream を渡すとzip全体がヒープに載るため、一時ファイル経由で開く
+        Path tmp = Files.createTempFile("redpandas", ".xlsx");
+        try {
+            Files.copy(inputStream, tmp, StandardCopyOption.REPLACE_EXISTING);
+            try (OPCPackage pkg = OPCPackage.open(tmp.toFile(), PackageAccess.READ)) {
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+                XSSFReader reader = new XSSFReader(pkg);
+
+                Iterator<InputStream> sheets = reader.getSheetsData();
+                if (!sheets.hasNext()) return;
+
+                try (InputStream sheet = sheets.next()) {
+                    XMLReader xml = XMLHelper.newXMLReader();
+                    xml.setContentHandler(new SheetHandler(strings, sink));
+                    xml.parse(new InputSource(sheet));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /*
+     * シートXML（sheetData/row/c）のハンドラ
+     * DOM版は 2行目〜最終行の1つ手前までを読むため、1行遅らせて出力し最終行は捨てる。
+     */
+    private static final class SheetHandler extends DefaultHandler {
+
+        private final ReadOnlySharedStringsTable strings;
+        private final Consumer<RedPanda> sink;
+
+        private String[] pending;   // 次の行が来たら出力する行
+        private String[] row;       // 読込中の行
+        private int rowIndex = -1;
+
+        // 読込中のセル
+        private int col;
+        private int nextCol;
+        private String type;
+        private boolean formula;
+        private boolean hasValue;
+        private boolean inValue;
+        private final StringBuilder value = new StringBuilder();
+
+        SheetHandler(ReadOnlySharedStringsTable strings, Consumer<RedPanda> sink) {
+            this.strings = strings;
+            this.sink = sink;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            switch (localName) {
+                case "row" -> {
+                    String r = attrs.getValue("r");
+                    rowIndex = (r == null) ? rowIndex + 1 : Integer.parseInt(r) - 1;
+                    row = new String[ExcelImportService.COLUMN_COUNT];
+                    nextCol = 0;
+                }
+                case "c" -> {
+                    String ref = attrs.getValue("r");
+                    col = (ref == null) ? nextCol : columnIndex(ref);
+                    nextCol = col + 1;
+                    type = attrs.getValue("t");
+                    formula = false;
+                    hasValue = false;
+                    value.setLength(0);
+                }
+                case "f" -> formula = true;
+                case "v", "t" -> {
+                    inValue = true;
+                    hasValue = true;
+                }
+                default -> { }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) value.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> inValue = false;
+                case "c" -> {
+                    if (row != null && col < ExcelImportService.COLUMN_COUNT
+                            && col != ExcelImportService.AGE_COLUMN) {
+                        row[col] = cellText(col);
+                    }
+                }
+                case "row" -> {
+                    if (pending != null) sink.accept(toRedPanda(pending));
+                    pending = (rowIndex >= 2) ? row : null;
+                    row = null;
+                }
+                default -> { }
+            }
+        }
+
+        // 最終行（pending）は DOM版と同じく読み捨てる
+        @Override
+        public void endDocument() {
+            pending = null;
+        }
+
+        /*
+         * DOM版の getCellValue / formatDateCell と同じ規則で文字列化
+         */
+        private String cellText(int c) {
+            if (!hasValue) return "";
+            String raw = value.toString();
+            try {
+                if ("s".equals(type)) {
+                    return strings.getItemAt(Integer.parseInt(raw.trim())).getString();
+                }
+                if ("inlineStr".equals(type)) {
+                    return raw;
+                }
+                if (formula) {
+                    // 数式はキャッシュ済みの計算結果を使う（CellValue.formatAsString 相当）
+                    return switch (type == null ? "n" : type) {
+                        case "n" -> String.valueOf(Double.parseDouble(raw));
+                        case "str" -> "\"" + raw + "\"";
+                        case "b" -> "1".equals(raw) ? "TRUE" : "FALSE";
+                        case "e" -> raw;
+                        default -> "";
+                    };
+                }
+                if (type == null || "n".equals(type)) {
+                    double numericValue = Double.parseDouble(raw);
+                    // 0 は "1899/12/31" になってしまうため排除
+                    if (ExcelImportService.isDateColumn(c) && numericValue == 0.0) return "";
+                    return ExcelImportService.formatSerialDate(numericValue);
+                }
+                return "";
+            } catch (Exception e) {
+                return "";
+            }
+        }
+
+        private static RedPanda toRedPanda(String[] cols) {
+            for (int i = 0; i < cols.length; i++) {
+                if (cols[i] == null) cols[i] = "";
+            }
+            return ExcelImportService.toRedPanda(cols);
+        }
+
+        // "P12" → 15
+        private static int columnIndex(String ref) {
+            int n = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char ch = ref.charAt(i);
+                if (ch < 'A' || ch > 'Z') break;
+                n = n * 26 + (ch - 'A' + 1);
+            }
+            return n - 1;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.redpandaapp.service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.redpandaapp.config.StorageConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * GCS の JSON API（objects.list）で pandas/ 配下を列挙する（公開バケット前提）
+ * 取得は RemoteFetcher 経由（期限付き・GCS の画像確認とホスト単位のブレーカーを共有）。
+ */
+@Component
+@ConditionalOnProperty(name = "app.asset.lister", havingValue = "gcs", matchIfMissing = true)
+public class GcsAssetLister implements AssetLister {
+
+    private static final String PREFIX = "pandas/";
+
+    private final StorageConfig storageConfig;
+    private final ObjectMapper objectMapper;
+    private final RemoteFetcher fetcher;
+    // 一覧は毎回取り直す（マニフェストの再読込間隔は ImageManifest が決める）
+    private final RemoteFetcher.Policy policy;
+
+    public GcsAssetLister(StorageConfig storageConfig, ObjectMapper objectMapper, RemoteFetcher fetcher,
+                          @Value("${app.asset.list-timeout:PT10S}") Duration timeout) {
+        this.storageConfig = storageConfig;
+        this.objectMapper = objectMapper;
+        this.fetcher = fetcher;
+        this.policy = new RemoteFetcher.Policy(timeout, Duration.ZERO, Duration.ZERO);
+    }
+
+    @Override
+    public List<AssetObject> list() throws IOException {
+        List<AssetObject> objects = new ArrayList<>();
+        String pageToken = null;
+
+        do {
+            JsonNode page = fetchPage(pageToken);
+            for (JsonNode item : page.path("items")) {
+                String name = item.path("name").asText();
+                String rel = name.substring(PREFIX.length());
+                // サブフォルダは対象外
+                if (rel.isEmpty() || rel.contains("/")) continue;
+                objects.add(new AssetObject(rel, item.path("generation").asText()));
+            }
+            pageToken = page.path("nextPageToken").asText(null);
+        } while (pageToken != null);
+
+        return objects;
+    }
+
+    private JsonNode fetchPage(String pageToken) throws IOException {
+        String bucket = URLEncoder.encode(storageConfig.getAssetBucket(), StandardCharsets.UTF_8);
+        StringBuilder url = new StringBuilder("https://storage.googleapis.com/storage/v1/b/")
+                .append(bucket)
+                .append("/o?prefix=").append(PREFIX)
+                .append("&fields=items(name,generation),nextPageToken");
+        if (pageToken != null) {
+            url.append("&pageToken=").append(URLEncoder.encode(pageToken, StandardCharsets.UTF_8));
+        }
+
+        RemoteFetcher.Response res = fetcher.get(url.toString(), policy);
+        if (res.status() != 200) {
+            throw new IOException("GCS の一覧取得に失敗しました: HTTP " + res.status());
+        }
+        // 前回のページを返されても、他のページと時点がずれるので使わない（マニフェストは前回のまま）
+        if (res.fallback()) {
+            throw new IOException("GCS が応答しないため一覧を取得できませんでした");
+        }
+        return objectMapper.readTree(res.body());
+    }
+}
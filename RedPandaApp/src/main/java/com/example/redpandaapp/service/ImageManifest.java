@@ -0,0 +1,225 @@
+package com.example.redpandaapp.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/*
+ * 個体画像のマニフェスト（索引）
+ * pandas/ 配下を一度だけ列挙し、ファイル名を「正規化名＋連番」で索引する。
+ * 一覧・詳細の画像候補はメモリ上の索引から返すため、HEAD の総当たりは不要になる。
+ * 定期的に再列挙し、増減のあったファイルに関係するキーだけ索引を差し替える。
+ */
+@Service
+public class ImageManifest {
+
+    public static final String URL_PREFIX = "/assets/pandas/";
+
+    // 従来の候補列挙と同じ拡張子の優先順と連番上限
+    private static final List<String> EXTS = List.of("jpg", "jpeg", "png");
+    private static final int MAX_ORDINAL = 20;
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingInt(Entry::ordinal)
+            .thenComparingInt(Entry::extRank)
+            .thenComparing(Entry::filename);
+
+    private final AssetLister lister;
+    private final AtomicReference<Manifest> current = new AtomicReference<>();
+    private volatile boolean attempted;
+    private final AtomicLong versions = new AtomicLong();
+    // 列挙中は GCS を待つので synchronized ではなく ReentrantLock（仮想スレッドを固定しない）
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    public ImageManifest(AssetLister lister) {
+        this.lister = lister;
+    }
+
+    /** 索引の1件（連番0は「名前.jpg」） */
+    record Entry(int ordinal, int extRank, String filename) {}
+
+    /** 列挙結果と索引の不変スナップショット */
+    private record Manifest(long version,
+                            Map<String, String> objects,
+                            Map<String, List<Entry>> entries,
+                            Map<String, List<String>> urls) {}
+
+    /** 一度でも列挙に成功していれば true（失敗時は呼び出し側が従来方式で探す） */
+    public boolean isReady() {
+        return manifest() != null;
+    }
+
+    /** 索引の版（画像の増減があるたびに変わる。未作成なら 0） */
+    public long version() {
+        Manifest m = manifest();
+        return m == null ? 0 : m.version();
+    }
+
+    /*
+     * 個体名に対応する画像URL（連番→拡張子の順）
+     */
+    public List<String> imageUrls(String name) {
+        Manifest m = manifest();
+        if (m == null) return List.of();
+        return m.urls().getOrDefault(NameNormalizer.normalizeName(name), List.of());
+    }
+
+    /*
+     * 索引が無いときに HEAD で確かめるファイル名の候補（元の名前と正規化名 × 連番 × 拡張子）
+     */
+    public static List<String> probeCandidates(String name) {
+        String key = NameNormalizer.normalizeName(name);
+        List<String> candidates = new ArrayList<>(2 * EXTS.size() * (MAX_ORDINAL + 1));
+        for (int i = 0; i <= MAX_ORDINAL; i++) {
+            String suffix = (i == 0) ? "" : Integer.toString(i);
+            for (String ext : EXTS) {
+                candidates.add(name + suffix + "." + ext);
+                candidates.add(key + suffix + "." + ext);
+            }
+        }
+        return candidates;
+    }
+
+    private Manifest manifest() {
+        Manifest m = current.get();
+        if (m != null || attempted) return m;
+
+        // 起動直後の初回だけ同期で列挙する（失敗したら以降は定期再取得に任せる）
+        refreshLock.lock();
+        try {
+            if (!attempted) refresh();
+        } finally {
+            refreshLock.unlock();
+        }
+        return current.get();
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.asset.manifest-refresh:PT5M}")
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            refreshLocked();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void refreshLocked() {
+        attempted = true;
+        Map<String, String> listed = new HashMap<>();
+        try {
+            for (AssetLister.AssetObject o : lister.list()) {
+                listed.put(o.name(), o.version());
+            }
+        } catch (Exception e) {
+            // 列挙失敗時は直前の索引を使い続ける
+            return;
+        }
+
+        Manifest prev = current.get();
+        if (prev == null) {
+            current.set(build(listed));
+        } else if (!prev.objects().equals(listed)) {
+            current.set(update(prev, listed));
+        }
+    }
+
+    private Manifest build(Map<String, String> listed) {
+        Map<String, List<Entry>> entries = new HashMap<>();
+        for (String fn : listed.keySet()) {
+            index(fn).forEach((key, e) -> entries.computeIfAbsent(key, k -> new ArrayList<>()).add(e));
+        }
+        Map<String, List<String>> urls = new HashMap<>();
+        entries.replaceAll((key, list) -> {
+            List<Entry> sorted = list.stream().sorted(ORDER).toList();
+            urls.put(key, toUrls(sorted));
+            return sorted;
+        });
+        return new Manifest(versions.incrementAndGet(), Map.copyOf(listed), Map.copyOf(entries), Map.copyOf(urls));
+    }
+
+    /*
+     * 差分更新：追加・削除されたファイルに関係するキーだけ作り直す
+     */
+    private Manifest update(Manifest prev, Map<String, String> listed) {
+        Set<String> removed = new HashSet<>(prev.objects().keySet());
+        removed.removeAll(listed.keySet());
+        Set<String> added = new HashSet<>(listed.keySet());
+        added.removeAll(prev.objects().keySet());
+
+        Map<String, List<Entry>> entries = new HashMap<>(prev.entries());
+        Map<String, List<String>> urls = new HashMap<>(prev.urls());
+        Set<String> touched = new HashSet<>();
+
+        for (String fn : removed) {
+            for (String key : index(fn).keySet()) {
+                List<Entry> list = new ArrayList<>(entries.getOrDefault(key, List.of()));
+                list.removeIf(e -> e.filename().equals(fn));
+                entries.put(key, list);
+                touched.add(key);
+            }
+        }
+        for (String fn : added) {
+            index(fn).forEach((key, e) -> {
+                List<Entry> list = new ArrayList<>(entries.getOrDefault(key, List.of()));
+                list.add(e);
+                entries.put(key, list);
+                touched.add(key);
+            });
+        }
+
+        for (String key : touched) {
+            List<Entry> sorted = entries.get(key).stream().sorted(ORDER).toList();
+            if (sorted.isEmpty()) {
+                entries.remove(key);
+                urls.remove(key);
+            } else {
+                entries.put(key, sorted);
+                urls.put(key, toUrls(sorted));
+            }
+        }
+        return new Manifest(versions.incrementAndGet(), Map.copyOf(listed), Map.copyOf(entries), Map.copyOf(urls));
+    }
+
+    /*
+     * ファイル名 → 索引キーと連番
+     * "名前.jpg" は連番0、"名前3.jpg" は連番3。名前自体が数字で終わる場合もあるので両方で登録する。
+     */
+    static Map<String, Entry> index(String filename) {
+        Map<String, Entry> keys = new HashMap<>();
+        int dot = filename.lastIndexOf('.');
+        if (dot <= 0) return keys;
+
+        int extRank = EXTS.indexOf(filename.substring(dot + 1));
+        if (extRank < 0) return keys;
+
+        String stem = filename.substring(0, dot);
+        keys.put(NameNormalizer.normalizeName(stem), new Entry(0, extRank, filename));
+
+        int d = stem.length();
+        while (d > 0 && stem.charAt(d - 1) >= '0' && stem.charAt(d - 1) <= '9') d--;
+        String digits = stem.substring(d);
+        if (d > 0 && !digits.isEmpty() && digits.length() <= 2 && digits.charAt(0) != '0') {
+            int ordinal = Integer.parseInt(digits);
+            if (ordinal <= MAX_ORDINAL) {
+                keys.putIfAbsent(NameNormalizer.normalizeName(stem.substring(0, d)),
+                        new Entry(ordinal, extRank, filename));
+            }
+        }
+        return keys;
+    }
+
+    private static List<String> toUrls(List<Entry> sorted) {
+        return sorted.stream().map(e -> URL_PREFIX + e.filename()).distinct().toList();
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.redpandaapp.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/*
+ * 投稿写真のサムネイル・中サイズ画像の生成
+ * アップロード時に一度だけデコードし、長辺を制限した JPEG を書き出す。
+ * 一覧はサムネイル、拡大表示は中サイズを使い、元画像は配信しないで済むようにする。
+ * デコードできない写真（壊れた JPEG・未対応の形式・画素数が多すぎるもの）は縮小画像を作らず、元画像だけにする。
+ */
+@Service
+public class ImageVariantService {
+
+    @Value("${app.image.thumbnail-size:320}")
+    private int thumbnailSize = 320;
+
+    @Value("${app.image.medium-size:1280}")
+    private int mediumSize = 1280;
+
+    @Value("${app.image.jpeg-quality:0.8}")
+    private float jpegQuality = 0.8f;
+
+    // デコードする画素数の上限（ファイルは小さくても展開すると巨大になる画像でメモリを使い切らないように）
+    @Value("${app.image.max-pixels:40000000}")
+    private long maxPixels = 40_000_000L;
+
+    /** 生成した派生画像のファイル名（デコードできない形式なら null） */
+    public record Variants(String thumbnail, String medium) {
+        public static final Variants NONE = new Variants(null, null);
+    }
+
+    /*
+     * original と同じディレクトリに <baseName>_m.jpg / <baseName>_t.jpg を作成
+     */
+    public Variants createVariants(Path original, String baseName) throws IOException {
+        BufferedImage src = decode(original);
+        if (src == null) {
+            return Variants.NONE;
+        }
+
+        Path dir = original.getParent();
+        // 中サイズ → サムネイルの順に縮小し、デコードは1回だけ
+        BufferedImage medium = resize(src, mediumSize);
+        BufferedImage thumb = resize(medium, thumbnailSize);
+
+        String mediumName = baseName + "_m.jpg";
+        String thumbName = baseName + "_t.jpg";
+        writeJpeg(medium, dir.resolve(mediumName));
+        writeJpeg(thumb, dir.resolve(thumbName));
+        return new Variants(thumbName, mediumName);
+    }
+
+    /*
+     * 縦横をヘッダーから読んで上限を確かめてからデコードする
+     * 読めない形式（HEIC など）・上限を超える画像・デコードに失敗した画像は null
+     */
+    private BufferedImage decode(Path original) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = (in == null) ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels <= 0 || pixels > maxPixels) return null;
+                return reader.read(0);
+            } catch (IOException | RuntimeException e) {
+                // 壊れた JPEG など（IIOException）。投稿自体は元画像で受け付ける
+                return null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /*
+     * 長辺が maxSize 以下になるように縮小（拡大はしない）
+     * 大きく縮める場合は半分ずつ縮めて画質の劣化を抑える
+     */
+    BufferedImage resize(BufferedImage src, int maxSize) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        double scale = Math.min(1.0, (double) maxSize / Math.max(w, h));
+        int tw = Math.max(1, (int) Math.round(w * scale));
+        int th = Math.max(1, (int) Math.round(h * scale));
+
+        BufferedImage cur = toRgb(src);
+        while (cur.getWidth() / 2 >= tw && cur.getHeight() / 2 >= th) {
+            cur = draw(cur, cur.getWidth() / 2, cur.getHeight() / 2);
+        }
+        if (cur.getWidth() != tw || cur.getHeight() != th) {
+            cur = draw(cur, tw, th);
+        }
+        return cur;
+    }
+
+    // JPEG は透過を持てないので白背景の RGB にそろえる
+    private BufferedImage toRgb(BufferedImage src) {
+        if (src.getType() == BufferedImage.TYPE_INT_RGB) return src;
+        BufferedImage rgb = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(src, 0, 0, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private BufferedImage draw(BufferedImage src, int w, int h) {
+        BufferedImage dst = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = dst.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(src, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return dst;
+    }
+
+    private void writeJpeg(BufferedImage img, Path dest) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+
+        try (OutputStream os = Files.newOutputStream(dest);
+             ImageOutputStream out = ImageIO.createImageOutputStream(os)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
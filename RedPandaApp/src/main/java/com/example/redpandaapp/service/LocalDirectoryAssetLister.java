@@ -0,0 +1,46 @@
+package com.example.redpandaapp.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/*
+ * ローカルディレクトリを pandas/ に見立てて列挙する（テスト・ローカル開発用）
+ */
+@Component
+@ConditionalOnProperty(name = "app.asset.lister", havingValue = "local")
+public class LocalDirectoryAssetLister implements AssetLister {
+
+    private final Path dir;
+
+    public LocalDirectoryAssetLister(@Value("${app.asset.local-dir:assets/pandas}") String dir) {
+        this.dir = Paths.get(dir).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public List<AssetObject> list() throws IOException {
+        if (!Files.isDirectory(dir)) {
+            throw new IOException("ディレクトリがありません: " + dir);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .map(p -> new AssetObject(p.getFileName().toString(), version(p)))
+                    .toList();
+        }
+    }
+
+    private String version(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis() + "-" + Files.size(p);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
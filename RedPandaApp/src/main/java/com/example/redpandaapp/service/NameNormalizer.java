@@ -0,0 +1,39 @@
+package com.example.redpandaapp.service;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/*
+ * 個体名の正規化（画像ファイル名・検索キーの照合用）
+ */
+public final class NameNormalizer {
+
+    private NameNormalizer() {}
+
+    // 名前の正規化（全角→半角/互換正規化・小文字化・空白/記号除去）
+    private static final Pattern DROP = Pattern.compile("[\\p{Punct}\\p{Space}＿　・/（）()［］\\[\\]…‥‐―ー~〜・]+");
+
+    public static String normalizeName(String s) {
+        if (s == null) return "";
+        String nfkc = Normalizer.normalize(s, Normalizer.Form.NFKC);
+        nfkc = nfkc.toLowerCase();
+        nfkc = DROP.matcher(nfkc).replaceAll("");
+        return nfkc;
+    }
+
+    /*
+     * 検索用の畳み込み（互換正規化で全角/半角をそろえ、小文字化し、カタカナをひらがなにする）
+     * normalizeName と違い記号や空白は残す
+     */
+    public static String fold(String s) {
+        if (s == null) return "";
+        String nfkc = Normalizer.normalize(s.trim(), Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder sb = new StringBuilder(nfkc.length());
+        for (int i = 0; i < nfkc.length(); i++) {
+            char c = nfkc.charAt(i);
+            // ァ(U+30A1)〜ヶ(U+30F6) → ぁ〜ゖ
+            sb.append((c >= '\u30A1' && c <= '\u30F6') ? (char) (c - 0x60) : c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.redpandaapp.service;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/*
+ * 画面組み立ての並行実行（仮想スレッド）
+ * リクエストごとの期限付きスコープを払い出し、GCS への同時接続数はセマフォで制限する。
+ */
+@Service
+public class PageConcurrency implements DisposableBean {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Duration deadline;
+    private final Semaphore gcsPermits;
+
+    public PageConcurrency(@Value("${app.page.deadline:PT3S}") Duration deadline,
+                           @Value("${app.asset.probe-concurrency:16}") int probeConcurrency) {
+        this.deadline = deadline;
+        this.gcsPermits = new Semaphore(probeConcurrency);
+    }
+
+    /** 既定の期限（app.page.deadline）のスコープ */
+    public PageScope open() {
+        return new PageScope(executor, deadline.toNanos());
+    }
+
+    /*
+     * GCS への呼び出しを同時接続数の上限内で実行
+     */
+    public <T> T withGcsPermit(Callable<T> call) throws Exception {
+        gcsPermits.acquire();
+        try {
+            return call.call();
+        } finally {
+            gcsPermits.release();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.redpandaapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/*
+ * 1リクエスト内の並行処理のスコープ（StructuredTaskScope 相当。Java 21 ではまだプレビューのため自前で持つ）
+ * fork した処理は仮想スレッドで並行に走り、join は全件完了か期限到達まで待つ。
+ * close で未完了の処理を取り消すので、try-with-resources で使う。
+ */
+public final class PageScope implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final long deadlineNanos;
+    private final List<Future<?>> forks = new ArrayList<>();
+
+    PageScope(ExecutorService executor, long timeoutNanos) {
+        this.executor = executor;
+        this.deadlineNanos = System.nanoTime() + timeoutNanos;
+    }
+
+    public <T> Subtask<T> fork(Callable<T> task) {
+        // リクエストの情報（メトリクスの endpoint タグなど）を fork 先からも引けるようにする
+        RequestAttributes attrs = RequestContextHolder.getRequestAttributes();
+        Future<T> f = executor.submit(() -> {
+            RequestContextHolder.setRequestAttributes(attrs);
+            try {
+                return task.call();
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        });
+        forks.add(f);
+        return new Subtask<>(f);
+    }
+
+    /*
+     * 全件の完了か期限まで待つ（期限を過ぎた処理は close で取り消される）
+     */
+    public PageScope join() throws InterruptedException {
+        for (Future<?> f : forks) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) break;
+            try {
+                f.get(remaining, TimeUnit.NANOSECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                // 結果は Subtask 側で取り出すときに判定する
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        for (Future<?> f : forks) {
+            if (!f.isDone()) f.cancel(true);
+        }
+    }
+
+    /** fork した1件の結果 */
+    public static final class Subtask<T> {
+        private final Future<T> future;
+
+        Subtask(Future<T> future) {
+            this.future = future;
+        }
+
+        /** 失敗・期限切れなら例外 */
+        public T get() throws ExecutionException, TimeoutException {
+            if (!future.isDone() || future.isCancelled()) {
+                throw new TimeoutException("期限内に完了しませんでした");
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExecutionException(e);
+            }
+        }
+
+        /** 失敗・期限切れなら fallback */
+        public T getOrElse(T fallback) {
+            try {
+                return get();
+            } catch (ExecutionException | TimeoutException e) {
+                return fallback;
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.redpandaapp.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/*
+ * 個体画像（GCS の公開オブジェクト）をローカルディスクに持って配信するためのキャッシュ
+ * - 容量上限付きの LRU（最も長く使われていないものから削除）
+ * - revalidate を過ぎたら ETag で条件付きGET（304 ならそのまま使い続ける）
+ * - 同じ URL の取得は同時に1本だけ（後から来た要求は先行の結果を待つ）
+ * - 取得に失敗したときは手元の古いものを返す
+ * - 上流の障害（接続・期限切れ・5xx）の後は backoff の間は問い合わせず、手元の古いものか失敗をすぐ返す
+ *   （毎回 upstream-timeout まで待たせない。手元に無ければ呼び出し側が GCS へリダイレクトする）
+ * 中身は置き換えずに毎回別名のファイルへ書くので、配信中のファイルが差し替わることはない。
+ * 本文をディスクへ逐次書くため、本文をメモリに持つ RemoteFetcher は通さず自前で接続する。
+ */
+@Service
+public class PandaAssetProxy {
+
+    private static final String FILE_PREFIX = "asset-";
+    private static final String DEFAULT_CACHE_CONTROL = "public, max-age=3600";
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long revalidateNanos;
+    private final int timeoutMillis;
+    private final long backoffNanos;
+
+    // URL → キャッシュ（アクセス順）。合計サイズと一緒に lock で守る
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    // 取得中の URL（同時取得の合流用）
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong fileSeq = new AtomicLong();
+    // 上流の障害中はこの時刻（System.nanoTime）まで問い合わせない。0 なら障害なし
+    private volatile long backoffUntil;
+
+    public PandaAssetProxy(@Value("${app.asset.cache-dir:}") String cacheDir,
+                           @Value("${app.asset.cache-max-bytes:134217728}") long maxBytes,
+                           @Value("${app.asset.cache-revalidate:PT10M}") Duration revalidate,
+                           @Value("${app.asset.upstream-timeout:PT5S}") Duration timeout,
+                           @Value("${app.asset.upstream-backoff:PT30S}") Duration backoff) throws IOException {
+        this.dir = (cacheDir == null || cacheDir.isBlank())
+                ? Files.createTempDirectory("redpanda-asset-cache")
+                : Files.createDirectories(Paths.get(cacheDir).toAbsolutePath().normalize());
+        this.maxBytes = maxBytes;
+        this.revalidateNanos = revalidate.toNanos();
+        this.timeoutMillis = (int) timeout.toMillis();
+        this.backoffNanos = backoff.toNanos();
+        removeLeftovers();
+    }
+
+    /** キャッシュ済みの画像（etag / cacheControl は上流の値。無ければ null / 既定値） */
+    public record Asset(Path file, long length, String contentType, String etag, String cacheControl) {}
+
+    /*
+     * URL の画像を返す（上流に無ければ null）。
+     * 上流に届かず手元にも無いときは IOException
+     */
+    public Asset get(String url) throws IOException {
+        Entry e = lookup(url);
+        if (e != null && System.nanoTime() - e.validatedAt < revalidateNanos) {
+            return e.asset;
+        }
+        if (backingOff()) {
+            if (e != null) return e.asset;
+            throw new IOException("上流が応答しないため問い合わせを止めています: " + url);
+        }
+        return load(url, e);
+    }
+
+    /*
+     * 手元のファイルが消えていた（容量超過で削除された直後など）ときに取り直す
+     */
+    public Asset reload(String url) throws IOException {
+        if (backingOff()) {
+            throw new IOException("上流が応答しないため問い合わせを止めています: " + url);
+        }
+        return load(url, null);
+    }
+
+    private boolean backingOff() {
+        long until = backoffUntil;
+        return until != 0 && System.nanoTime() - until < 0;
+    }
+
+    private Asset load(String url, Entry stale) throws IOException {
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = inFlight.putIfAbsent(url, mine);
+        if (running != null) {
+            Entry e = await(running);
+            return e == null ? null : e.asset;
+        }
+
+        try {
+            Entry e = fetch(url, stale);
+            mine.complete(e);
+            return e == null ? null : e.asset;
+        } catch (IOException | RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(url, mine);
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("画像の取得待ちが中断されました");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /*
+     * 上流から取得（stale があれば ETag で条件付き）
+     */
+    private Entry fetch(String url, Entry stale) throws IOException {
+        URL target;
+        try {
+            target = URI.create(url).toURL();
+        } catch (IllegalArgumentException e) {
+            // new URL(url) と同じく IOException 扱い（呼び出し側は上流へのリダイレクトに切り替える）
+            throw new MalformedURLException(url);
+        }
+        HttpURLConnection con = (HttpURLConnection) target.openConnection();
+        con.setInstanceFollowRedirects(true);
+        con.setConnectTimeout(timeoutMillis);
+        con.setReadTimeout(timeoutMillis);
+        if (stale != null && stale.asset.etag() != null) {
+            con.setRequestProperty("If-None-Match", stale.asset.etag());
+        }
+
+        boolean reached = false;
+        try {
+            int code = con.getResponseCode();
+            if (code >= 500 || code == 429) {
+                throw new IOException("画像の取得に失敗しました: HTTP " + code + " " + url);
+            }
+            reached = true;
+            backoffUntil = 0;
+
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && stale != null) {
+                stale.validatedAt = System.nanoTime();
+                return stale;
+            }
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                remove(url);
+                return null;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("画像の取得に失敗しました: HTTP " + code + " " + url);
+            }
+
+            Path tmp = Files.createTempFile(dir, ".fetch-", ".tmp");
+            try {
+                long length;
+                try (InputStream in = con.getInputStream();
+                     OutputStream out = Files.newOutputStream(tmp)) {
+                    length = in.transferTo(out);
+                }
+                Path file = dir.resolve(FILE_PREFIX + fileSeq.incrementAndGet());
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+
+                String cacheControl = con.getHeaderField("Cache-Control");
+                Entry e = new Entry(new Asset(file, length, con.getContentType(), con.getHeaderField("ETag"),
+                        cacheControl == null ? DEFAULT_CACHE_CONTROL : cacheControl), System.nanoTime());
+                put(url, e);
+                return e;
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException ex) {
+            // 上流の障害中は手元の古いものを配信し続ける（backoff を過ぎた要求でまた確認する）
+            if (!reached && backoffNanos > 0) {
+                backoffUntil = System.nanoTime() + backoffNanos;
+            }
+            if (stale != null) return stale;
+            throw ex;
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    // ===== LRU =====
+
+    private Entry lookup(String url) {
+        lock.lock();
+        try {
+            return entries.get(url);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(String url, Entry e) {
+        lock.lock();
+        try {
+            Entry old = entries.put(url, e);
+            if (old != null) discard(old);
+            totalBytes += e.asset.length();
+
+            // 上限を超えたら古いものから削除（入れたばかりの1件は残す）
+            Iterator<Entry> it = entries.values().iterator();
+            while (totalBytes > maxBytes && entries.size() > 1 && it.hasNext()) {
+                Entry eldest = it.next();
+                if (eldest == e) continue;
+                it.remove();
+                discard(eldest);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(String url) {
+        lock.lock();
+        try {
+            Entry old = entries.remove(url);
+            if (old != null) discard(old);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 配信中のファイルを消しても、開いているチャネルからは最後まで読める
+    private void discard(Entry e) {
+        totalBytes -= e.asset.length();
+        try {
+            Files.deleteIfExists(e.asset.file());
+        } catch (IOException ignore) {
+            // 次の起動時に removeLeftovers で消える
+        }
+    }
+
+    // 前回の起動で残ったファイル（中身の対応表はメモリにしか無いので使えない）
+    private void removeLeftovers() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, p -> {
+            String n = p.getFileName().toString();
+            return n.startsWith(FILE_PREFIX) || n.startsWith(".fetch-");
+        })) {
+            for (Path p : files) Files.deleteIfExists(p);
+        }
+    }
+
+    private static final class Entry {
+        final Asset asset;
+        volatile long validatedAt;
+
+        Entry(Asset asset, long validatedAt) {
+            this.asset = asset;
+            this.validatedAt = validatedAt;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.redpandaapp.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.example.redpandaapp.model.RedPanda;
+
+/*
+ * 個体データの二進形式（ビルド時に redpandas_backup.xlsx から作る redpandas_backup.rpd）
+ * 列ごとに文字列辞書の番号を並べた列指向の形式で、園名・性別など繰り返しの多い値は1回だけ持つ。
+ * 読込は POI を使わずに済むため、コールドスタートでも数ミリ秒で一覧を返せる。
+ * 年齢は日付で変わるので保存せず、読込時に生年月日から計算し直す。
+ *
+ *   "RPDS" / 版(int) / 行数(int) / 辞書件数(int) / 辞書(UTF × 件数) / 列ごとの辞書番号(int × 行数)
+ *   辞書番号 -1 は null
+ */
+public final class PandaDatasetCodec {
+
+    /** クラスパス上の位置 */
+    public static final String RESOURCE = "/redpandas_backup.rpd";
+
+    private static final int MAGIC = 0x52504453; // "RPDS"
+    private static final int FORMAT_VERSION = 1;
+
+    // 保存する列（Excel の列順。年齢列は除く）
+    private static final int[] COLUMNS = buildColumns();
+
+    private static final Map<Integer, Function<RedPanda, String>> GETTERS = Map.ofEntries(
+            Map.entry(0, RedPanda::getName),
+            Map.entry(1, RedPanda::getGender),
+            Map.entry(2, RedPanda::getBirthDate),
+            Map.entry(3, RedPanda::getDeathDate),
+            Map.entry(5, RedPanda::getMovedOutDate),
+            Map.entry(6, RedPanda::getMovedOutZoo),
+            Map.entry(7, RedPanda::getArrivalDate),
+            Map.entry(8, RedPanda::getOriginZoo),
+            Map.entry(9, RedPanda::getFather),
+            Map.entry(10, RedPanda::getMother),
+            Map.entry(11, RedPanda::getPair1),
+            Map.entry(12, RedPanda::getPair2),
+            Map.entry(13, RedPanda::getPair3),
+            Map.entry(14, RedPanda::getPersonality),
+            Map.entry(15, RedPanda::getFeature));
+
+    private PandaDatasetCodec() {}
+
+    public static void write(List<RedPanda> pandas, OutputStream os) throws IOException {
+        List<String> dict = new ArrayList<>();
+        Map<String, Integer> ids = new HashMap<>();
+        int[][] cells = new int[COLUMNS.length][pandas.size()];
+
+        for (int c = 0; c < COLUMNS.length; c++) {
+            Function<RedPanda, String> getter = GETTERS.get(COLUMNS[c]);
+            for (int r = 0; r < pandas.size(); r++) {
+                String v = getter.apply(pandas.get(r));
+                cells[c][r] = (v == null) ? -1 : ids.computeIfAbsent(v, k -> {
+                    dict.add(k);
+                    return dict.size() - 1;
+                });
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(pandas.size());
+        out.writeInt(dict.size());
+        for (String s : dict) {
+            out.writeUTF(s);
+        }
+        for (int[] column : cells) {
+            for (int id : column) {
+                out.writeInt(id);
+            }
+        }
+        out.flush();
+    }
+
+    public static List<RedPanda> read(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("個体データの形式が不正です");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("個体データの版が不明です: " + version);
+        }
+
+        int rows = in.readInt();
+        String[] dict = new String[in.readInt()];
+        for (int i = 0; i < dict.length; i++) {
+            dict[i] = in.readUTF();
+        }
+
+        String[][] table = new String[rows][ExcelImportService.COLUMN_COUNT];
+        for (int column : COLUMNS) {
+            for (int r = 0; r < rows; r++) {
+                int id = in.readInt();
+                table[r][column] = (id < 0) ? null : dict[id];
+            }
+        }
+
+        // Excel からの読込と同じ変換（年齢はここで計算）
+        List<RedPanda> list = new ArrayList<>(rows);
+        for (String[] cols : table) {
+            list.add(ExcelImportService.toRedPanda(cols));
+        }
+        return list;
+    }
+
+    private static int[] buildColumns() {
+        int[] cols = new int[ExcelImportService.COLUMN_COUNT - 1];
+        int i = 0;
+        for (int c = 0; c < ExcelImportService.COLUMN_COUNT; c++) {
+            if (c != ExcelImportService.AGE_COLUMN) cols[i++] = c;
+        }
+        return cols;
+    }
+}
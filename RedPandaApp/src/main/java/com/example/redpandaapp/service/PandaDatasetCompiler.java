@@ -0,0 +1,38 @@
+package com.example.redpandaapp.service;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.example.redpandaapp.model.RedPanda;
+
+/*
+ * バックアップExcelを二進形式に変換するビルド用のツール（gradle compilePandaDataset から実行）
+ *   引数: <入力 .xlsx> <出力 .rpd>
+ */
+public final class PandaDatasetCompiler {
+
+    private PandaDatasetCompiler() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("usage: PandaDatasetCompiler <input.xlsx> <output.rpd>");
+            System.exit(2);
+        }
+        Path input = Path.of(args[0]);
+        Path output = Path.of(args[1]);
+
+        List<RedPanda> pandas;
+        try (InputStream is = Files.newInputStream(input)) {
+            pandas = new ExcelStreamingParser().parse(is);
+        }
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (OutputStream os = Files.newOutputStream(output)) {
+            PandaDatasetCodec.write(pandas, os);
+        }
+        System.out.println(pandas.size() + " 件を " + output + " に書き出しました");
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.redpandaapp.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.example.redpandaapp.model.RedPanda;
+
+/*
+ * 家系図（スナップショットごとに作成・不変）
+ * 父・母・ペアの自由記述を NameNormalizer.normalizeName で個体に解決し、
+ * 親子・ペアの関係を通し番号の配列（子とペアは CSR 形式）で持つ。
+ * 一覧に載っていない親（他園の個体など）は名前だけのノードとして扱う。
+ * 探索は訪問済みを記録するので、データの誤りで親子が循環していても止まる。
+ */
+public final class PandaGenealogy {
+
+    private static final int NONE = -1;
+
+    // 親・ペア欄で「記載なし」を意味する値
+    private static final Set<String> UNKNOWN = Set.of("不明", "なし", "無し");
+
+    // 通し番号 → 表示名 / 個体（一覧に無い親は null）
+    private final String[] names;
+    private final RedPanda[] pandas;
+    private final Map<String, Integer> byKey;
+
+    private final int[] father;
+    private final int[] mother;
+    // 子・ペアの隣接（node の分は list[start[node] .. start[node + 1])）
+    private final int[] childStart;
+    private final int[] children;
+    private final int[] mateStart;
+    private final int[] mates;
+    // 親子の循環に含まれるノード
+    private final boolean[] cyclic;
+
+    /** 家系図上の1個体（generation は本人から何代離れているか） */
+    public record Member(String name, int generation, String relation, String via, boolean listed) {}
+
+    /** 本人を中心にした家系 */
+    public record Family(String name,
+                         List<Member> ancestors,
+                         List<Member> descendants,
+                         List<Member> siblings,
+                         List<Member> mates,
+                         boolean cyclic) {}
+
+    public PandaGenealogy(List<RedPanda> list) {
+        Map<String, Integer> keys = new HashMap<>();
+        List<String> nameList = new ArrayList<>();
+        List<RedPanda> pandaList = new ArrayList<>();
+
+        // 一覧の個体を先に採番（同名は先頭を優先）
+        for (RedPanda p : list) {
+            String key = NameNormalizer.normalizeName(p.getName());
+            if (key.isEmpty() || keys.containsKey(key)) continue;
+            keys.put(key, nameList.size());
+            nameList.add(p.getName().trim());
+            pandaList.add(p);
+        }
+        int listedCount = nameList.size();
+
+        // 親・ペアの名前を解決（一覧に無ければ名前だけのノードを追加）
+        int[][] parents = new int[listedCount][];
+        List<int[]> mateEdges = new ArrayList<>();
+        for (int i = 0; i < listedCount; i++) {
+            RedPanda p = pandaList.get(i);
+            int f = resolve(p.getFather(), keys, nameList, pandaList);
+            int m = resolve(p.getMother(), keys, nameList, pandaList);
+            // 自分自身を親とする記述は無視する
+            parents[i] = new int[] { f == i ? NONE : f, m == i ? NONE : m };
+
+            for (String pair : new String[] { p.getPair1(), p.getPair2(), p.getPair3() }) {
+                int mate = resolve(pair, keys, nameList, pandaList);
+                if (mate != NONE && mate != i) mateEdges.add(new int[] { i, mate });
+            }
+            // 同じ子の父母もペアとみなす
+            if (parents[i][0] != NONE && parents[i][1] != NONE && parents[i][0] != parents[i][1]) {
+                mateEdges.add(new int[] { parents[i][0], parents[i][1] });
+            }
+        }
+
+        int n = nameList.size();
+        this.names = nameList.toArray(String[]::new);
+        this.pandas = pandaList.toArray(RedPanda[]::new);
+        this.byKey = Map.copyOf(keys);
+
+        this.father = new int[n];
+        this.mother = new int[n];
+        Arrays.fill(father, NONE);
+        Arrays.fill(mother, NONE);
+        List<int[]> childEdges = new ArrayList<>();
+        for (int i = 0; i < listedCount; i++) {
+            father[i] = parents[i][0];
+            mother[i] = parents[i][1];
+            if (father[i] != NONE) childEdges.add(new int[] { father[i], i });
+            if (mother[i] != NONE && mother[i] != father[i]) childEdges.add(new int[] { mother[i], i });
+        }
+
+        this.childStart = new int[n + 1];
+        this.children = csr(n, childEdges, childStart, false);
+        this.mateStart = new int[n + 1];
+        this.mates = csr(n, mateEdges, mateStart, true);
+        this.cyclic = findCycles(n);
+    }
+
+    public boolean contains(String name) {
+        return node(name).isPresent();
+    }
+
+    /*
+     * 本人を中心に、祖先・子孫は depth 代まで、きょうだい・ペアは1代分
+     * 一覧に無い名前（他園の親など）も名前だけで引ける
+     */
+    public Optional<Family> family(String name, int depth) {
+        return node(name).map(i -> new Family(
+                names[i],
+                ancestors(i, depth),
+                descendants(i, depth),
+                siblings(i),
+                matesOf(i),
+                cyclic[i]));
+    }
+
+    // ===== 探索（いずれも訪問した分だけの計算量） =====
+
+    private List<Member> ancestors(int self, int depth) {
+        List<Member> out = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        seen.add(self);
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[] { self, 0 });
+        while (!queue.isEmpty()) {
+            int[] cur = queue.poll();
+            if (cur[1] >= depth) continue;
+            int[][] ps = { { father[cur[0]], 0 }, { mother[cur[0]], 1 } };
+            for (int[] p : ps) {
+                if (p[0] == NONE || !seen.add(p[0])) continue;
+                out.add(member(p[0], cur[1] + 1, p[1] == 0 ? "父" : "母", cur[0]));
+                queue.add(new int[] { p[0], cur[1] + 1 });
+            }
+        }
+        return out;
+    }
+
+    private List<Member> descendants(int self, int depth) {
+        List<Member> out = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        seen.add(self);
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[] { self, 0 });
+        while (!queue.isEmpty()) {
+            int[] cur = queue.poll();
+            if (cur[1] >= depth) continue;
+            for (int k = childStart[cur[0]]; k < childStart[cur[0] + 1]; k++) {
+                int c = children[k];
+                if (!seen.add(c)) continue;
+                out.add(member(c, cur[1] + 1, "子", cur[0]));
+                queue.add(new int[] { c, cur[1] + 1 });
+            }
+        }
+        return out;
+    }
+
+    // 父母とも同じなら「きょうだい」、片方だけなら「異父」「異母」
+    private List<Member> siblings(int self) {
+        Set<Integer> seen = new LinkedHashSet<>();
+        for (int parent : new int[] { father[self], mother[self] }) {
+            if (parent == NONE) continue;
+            for (int k = childStart[parent]; k < childStart[parent + 1]; k++) {
+                if (children[k] != self) seen.add(children[k]);
+            }
+        }
+        List<Member> out = new ArrayList<>(seen.size());
+        for (int s : seen) {
+            boolean sameFather = father[self] != NONE && father[s] == father[self];
+            boolean sameMother = mother[self] != NONE && mother[s] == mother[self];
+            String relation = (sameFather && sameMother) ? "きょうだい" : sameFather ? "異母きょうだい" : "異父きょうだい";
+            out.add(member(s, 0, relation, NONE));
+        }
+        return out;
+    }
+
+    private List<Member> matesOf(int self) {
+        List<Member> out = new ArrayList<>();
+        for (int k = mateStart[self]; k < mateStart[self + 1]; k++) {
+            out.add(member(mates[k], 0, "ペア", NONE));
+        }
+        return out;
+    }
+
+    private Member member(int node, int generation, String relation, int via) {
+        return new Member(names[node], generation, relation, via == NONE ? null : names[via], pandas[node] != null);
+    }
+
+    private Optional<Integer> node(String name) {
+        if (name == null) return Optional.empty();
+        return Optional.ofNullable(byKey.get(NameNormalizer.normalizeName(name)));
+    }
+
+    // ===== 構築 =====
+
+    private static int resolve(String name, Map<String, Integer> keys, List<String> nameList, List<RedPanda> pandaList) {
+        String key = NameNormalizer.normalizeName(name);
+        if (key.isEmpty() || UNKNOWN.contains(key)) return NONE;
+        return keys.computeIfAbsent(key, k -> {
+            nameList.add(name.trim());
+            pandaList.add(null);
+            return nameList.size() - 1;
+        });
+    }
+
+    // 辺のリストを CSR に詰める（undirected なら両向き、重複は除く）
+    private static int[] csr(int n, List<int[]> edges, int[] start, boolean undirected) {
+        List<Set<Integer>> adj = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) adj.add(new LinkedHashSet<>());
+        for (int[] e : edges) {
+            adj.get(e[0]).add(e[1]);
+            if (undirected) adj.get(e[1]).add(e[0]);
+        }
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            start[i] = total;
+            total += adj.get(i).size();
+        }
+        start[n] = total;
+
+        int[] list = new int[total];
+        int k = 0;
+        for (Set<Integer> s : adj) {
+            for (int v : s) list[k++] = v;
+        }
+        return list;
+    }
+
+    /*
+     * 親をたどる向きの深さ優先探索で、循環に含まれるノードに印を付ける
+     * （再帰すると長い系統でスタックを使い切るので明示的なスタックで行う）
+     */
+    private boolean[] findCycles(int n) {
+        boolean[] onCycle = new boolean[n];
+        byte[] state = new byte[n]; // 0: 未訪問 / 1: 探索中 / 2: 完了
+        int[] path = new int[n];
+        int[] next = new int[n];    // path 上の各ノードで次に見る親（0: 父 / 1: 母 / 2: 済）
+
+        for (int root = 0; root < n; root++) {
+            if (state[root] != 0) continue;
+            int top = 0;
+            path[0] = root;
+            next[0] = 0;
+            state[root] = 1;
+            while (top >= 0) {
+                int v = path[top];
+                if (next[top] == 2) {
+                    state[v] = 2;
+                    top--;
+                    continue;
+                }
+                int p = (next[top]++ == 0) ? father[v] : mother[v];
+                if (p == NONE) continue;
+                if (state[p] == 1) {
+                    // 探索中のノードに戻った：path 上の p から v までが循環
+                    for (int k = top; k >= 0; k--) {
+                        onCycle[path[k]] = true;
+                        if (path[k] == p) break;
+                    }
+                } else if (state[p] == 0) {
+                    state[p] = 1;
+                    path[++top] = p;
+                    next[top] = 0;
+                }
+            }
+        }
+        return onCycle;
+    }
+}
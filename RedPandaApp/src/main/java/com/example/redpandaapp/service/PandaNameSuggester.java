@@ -0,0 +1,415 @@
+package com.example.redpandaapp.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import com.example.redpandaapp.model.RedPanda;
+
+/*
+ * 個体名の入力補完（スナップショットごとに作成・不変）
+ * 名前を NameNormalizer.fold で畳み込んだもの・区切りを除いたもの・ローマ字読みをキーに、
+ * 配列で持つ三分探索木（TST）を作る。各ノードには「そこまでの接頭辞で始まる個体の上位 MAX_SUGGESTIONS 件」を
+ * 作成時に求めておくので、前方一致は入力の文字数ぶん木をたどるだけで答えが決まる（照合で文字列を作らない）。
+ * 前方一致が足りないときだけ、編集距離1（1文字の置換・挿入・削除）の接頭辞で補う。
+ * 並び順は図鑑一覧と同じ（在園 → 過去在園、それぞれ生年月日降順）。
+ */
+public final class PandaNameSuggester {
+
+    /** 1回に返す候補の上限 */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    // 編集距離1で補うのは、この文字数以上の入力だけ（1文字だと何にでも一致する）
+    private static final int FUZZY_MIN_LENGTH = 2;
+
+    // 読みを入力するときに省かれやすい区切り（空白・中黒・記号）
+    private static final Pattern SEPARATORS = Pattern.compile("[\\p{Space}\\p{Punct}・･]+");
+
+    private static final int[] NONE = new int[0];
+
+    /** 候補1件 */
+    public record Suggestion(String name, boolean inPark) {}
+
+    /** 補完結果（matches は前方一致、similar は編集距離1で補った分） */
+    public record Result(List<Suggestion> matches, List<Suggestion> similar) {}
+
+    private static final Result EMPTY = new Result(List.of(), List.of());
+
+    // 順位 → 候補（同名は先頭のみ）
+    private final Suggestion[] ranked;
+
+    // 三分探索木（ノード番号で引く。子が無ければ -1）
+    private final char[] split;
+    private final int[] lo;
+    private final int[] eq;
+    private final int[] hi;
+    private final int root;
+
+    // ノード → そこまでの接頭辞で始まる個体の順位（昇順・上位のみ）と、その候補リスト
+    private final int[][] topAll;
+    private final int[][] topInPark;
+    private final List<List<Suggestion>> listAll;
+    private final List<List<Suggestion>> listInPark;
+
+    public PandaNameSuggester(List<RedPanda> pandas) {
+        Comparator<RedPanda> byBirthDesc = Comparator.comparing(RedPanda::getBirthDate,
+                Comparator.nullsLast(Comparator.<String>naturalOrder()).reversed());
+        Map<String, Suggestion> byName = new LinkedHashMap<>();
+        Stream.concat(
+                        pandas.stream().filter(PandaNameSuggester::isInPark).sorted(byBirthDesc),
+                        pandas.stream().filter(p -> !isInPark(p)).sorted(byBirthDesc))
+                .filter(p -> p.getName() != null && !p.getName().isBlank())
+                .forEach(p -> byName.putIfAbsent(p.getName(), new Suggestion(p.getName(), isInPark(p))));
+        this.ranked = byName.values().toArray(Suggestion[]::new);
+
+        // キー → 順位。整列済みのキーを中央から入れて、各階層の二分木を偏らせない
+        TreeMap<String, BitSet> keys = new TreeMap<>();
+        for (int r = 0; r < ranked.length; r++) {
+            for (String k : keysOf(ranked[r].name())) {
+                keys.computeIfAbsent(k, x -> new BitSet()).set(r);
+            }
+        }
+        Builder b = new Builder(keys.size() * 4);
+        List<Map.Entry<String, BitSet>> entries = new ArrayList<>(keys.entrySet());
+        b.insertBalanced(entries, 0, entries.size());
+
+        this.split = Arrays.copyOf(b.split, b.size);
+        this.lo = Arrays.copyOf(b.lo, b.size);
+        this.eq = Arrays.copyOf(b.eq, b.size);
+        this.hi = Arrays.copyOf(b.hi, b.size);
+        this.root = b.root;
+
+        this.topAll = new int[b.size][];
+        this.topInPark = new int[b.size][];
+        collect(root, b.terminal, r -> true, topAll);
+        collect(root, b.terminal, r -> ranked[r].inPark(), topInPark);
+        this.listAll = toLists(topAll);
+        this.listInPark = toLists(topInPark);
+    }
+
+    /*
+     * q で始まる個体名（全角/半角・カタカナ/ひらがな・大文字/小文字・区切りの有無を区別しない。ローマ字でも引ける）
+     * 前方一致が limit 件に満たなければ、編集距離1の候補を similar に足す。
+     */
+    public Result suggest(String q, boolean inParkOnly, int limit) {
+        if (q == null || root < 0) return EMPTY;
+        int max = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        int[][] top = inParkOnly ? topInPark : topAll;
+        List<List<Suggestion>> lists = inParkOnly ? listInPark : listAll;
+
+        // よくある入力（ASCII・かな・漢字）はそのまま木をたどり、それ以外だけ NFKC で畳み込んでからたどる
+        String folded = null;
+        int node = walk(q, true);
+        if (node == SLOW_PATH) {
+            folded = NameNormalizer.fold(q);
+            node = walk(folded, false);
+        }
+        if (node == EMPTY_QUERY) return EMPTY;
+
+        List<Suggestion> matches = (node >= 0) ? lists.get(node) : List.of();
+        if (matches.size() > max) matches = matches.subList(0, max);
+        if (matches.size() == max) return new Result(matches, List.of());
+
+        if (folded == null) folded = NameNormalizer.fold(q);
+        if (folded.length() < FUZZY_MIN_LENGTH) return new Result(matches, List.of());
+
+        BitSet hits = new BitSet(ranked.length);
+        fuzzy(folded, 0, root, -1, false, top, hits);
+        if (node >= 0) {
+            for (int r : top[node]) hits.clear(r);
+        }
+        List<Suggestion> similar = new ArrayList<>();
+        for (int r = hits.nextSetBit(0); r >= 0 && matches.size() + similar.size() < max; r = hits.nextSetBit(r + 1)) {
+            similar.add(ranked[r]);
+        }
+        return new Result(matches, similar);
+    }
+
+    // ===== 照合 =====
+
+    private static final int MISS = -1;
+    private static final int SLOW_PATH = -2;
+    private static final int EMPTY_QUERY = -3;
+
+    // 入力を1文字ずつ畳み込みながら木をたどり、最後の文字のノードを返す
+    private int walk(String q, boolean raw) {
+        int from = 0;
+        int to = q.length();
+        while (from < to && isSpace(q.charAt(from))) from++;
+        while (to > from && isSpace(q.charAt(to - 1))) to--;
+        if (from == to) return EMPTY_QUERY;
+
+        int last = -1;
+        for (int i = from; i < to; i++) {
+            int c = raw ? quickFold(q.charAt(i)) : q.charAt(i);
+            if (c < 0) return SLOW_PATH;
+            int n = (last < 0) ? root : eq[last];
+            while (n >= 0 && split[n] != c) n = (c < split[n]) ? lo[n] : hi[n];
+            if (n < 0) return MISS;
+            last = n;
+        }
+        return last;
+    }
+
+    private static boolean isSpace(char c) {
+        return c <= ' ' || c == '\u3000';
+    }
+
+    // NameNormalizer.fold と同じ結果になる文字だけその場で畳み込む（それ以外は -1）
+    private static int quickFold(char c) {
+        if (c >= 'A' && c <= 'Z') return c + ('a' - 'A');
+        if (c < 0x80) return c;
+        if (c >= '\uFF01' && c <= '\uFF5E') return quickFold((char) (c - 0xFEE0));
+        if (c == '\u3000') return ' ';
+        if (c >= 'ぁ' && c <= 'ゖ') return c;
+        if (c >= 'ァ' && c <= 'ヶ') return c - 0x60;
+        if (c == 'ー' || c == '・') return c;
+        if (c >= '\u4E00' && c <= '\u9FFF') return c;
+        return -1;
+    }
+
+    /*
+     * 編集距離1の接頭辞一致（f[i..] を level の階層から照合する。edited なら残りは完全一致のみ）
+     */
+    private void fuzzy(String f, int i, int level, int last, boolean edited, int[][] top, BitSet hits) {
+        if (i == f.length()) {
+            // 編集なしで最後まで一致したものは前方一致の側にある
+            if (edited && last >= 0) {
+                for (int r : top[last]) hits.set(r);
+            }
+            return;
+        }
+        char c = f.charAt(i);
+        if (edited) {
+            int n = level;
+            while (n >= 0 && split[n] != c) n = (c < split[n]) ? lo[n] : hi[n];
+            if (n >= 0) fuzzy(f, i + 1, eq[n], n, true, top, hits);
+            return;
+        }
+        // 削除：入力の1文字を読み飛ばす
+        fuzzy(f, i + 1, level, last, true, top, hits);
+        siblings(f, i, level, c, top, hits);
+    }
+
+    // 階層内の全ノードを巡る（一致はそのまま進み、不一致は置換・挿入として1回だけ許す）
+    private void siblings(String f, int i, int n, char c, int[][] top, BitSet hits) {
+        if (n < 0) return;
+        siblings(f, i, lo[n], c, top, hits);
+        if (split[n] == c) {
+            fuzzy(f, i + 1, eq[n], n, false, top, hits);
+        } else {
+            fuzzy(f, i + 1, eq[n], n, true, top, hits); // 置換
+            fuzzy(f, i, eq[n], n, true, top, hits);     // 挿入（木の側に1文字多い）
+        }
+        siblings(f, i, hi[n], c, top, hits);
+    }
+
+    // ===== 作成 =====
+
+    /*
+     * 各ノードの上位を後順で求める。戻り値は n を根とする階層（lo/hi の兄弟を含む）全体の上位。
+     * 一本道のノードは子と同じ配列を共有する。
+     */
+    private int[] collect(int n, List<int[]> terminal, IntPredicate keep, int[][] top) {
+        if (n < 0) return NONE;
+        int[] own = NONE;
+        int[] t = terminal.get(n);
+        if (t != null) own = Arrays.stream(t).filter(keep).toArray();
+        int[] below = merge(own, collect(eq[n], terminal, keep, top));
+        top[n] = below;
+        return merge(merge(below, collect(lo[n], terminal, keep, top)), collect(hi[n], terminal, keep, top));
+    }
+
+    // 昇順・重複なしの2つを上位 MAX_SUGGESTIONS 件までまとめる（片方が空ならもう片方をそのまま返す）
+    private static int[] merge(int[] a, int[] b) {
+        if (b.length == 0) return a;
+        if (a.length == 0) return b;
+        int[] out = new int[Math.min(MAX_SUGGESTIONS, a.length + b.length)];
+        int i = 0, j = 0, k = 0;
+        while (k < out.length && (i < a.length || j < b.length)) {
+            int v;
+            if (j >= b.length || (i < a.length && a[i] < b[j])) v = a[i++];
+            else if (i >= a.length || b[j] < a[i]) v = b[j++];
+            else { v = a[i++]; j++; }
+            out[k++] = v;
+        }
+        return (k == out.length) ? out : Arrays.copyOf(out, k);
+    }
+
+    private List<List<Suggestion>> toLists(int[][] top) {
+        Map<int[], List<Suggestion>> shared = new IdentityHashMap<>();
+        List<List<Suggestion>> lists = new ArrayList<>(top.length);
+        for (int[] ranks : top) {
+            lists.add(shared.computeIfAbsent(ranks,
+                    rs -> Arrays.stream(rs).mapToObj(r -> ranked[r]).toList()));
+        }
+        return List.copyOf(lists);
+    }
+
+    // 1個体の照合キー（畳み込み・区切りなし・ローマ字読み）
+    static Set<String> keysOf(String name) {
+        Set<String> keys = new LinkedHashSet<>();
+        String folded = NameNormalizer.fold(name);
+        String compact = SEPARATORS.matcher(folded).replaceAll("");
+        keys.add(folded);
+        keys.add(compact);
+        String romaji = romaji(compact);
+        if (romaji != null) keys.add(romaji);
+        keys.remove("");
+        return keys;
+    }
+
+    private static boolean isInPark(RedPanda p) {
+        return isBlank(p.getDeathDate()) && isBlank(p.getMovedOutDate());
+    }
+
+    private static boolean isBlank(String s) { return s == null || s.isBlank(); }
+
+    /** 作成中の木（配列を伸ばしながらノードを足す） */
+    private static final class Builder {
+        char[] split;
+        int[] lo;
+        int[] eq;
+        int[] hi;
+        final List<int[]> terminal = new ArrayList<>();
+        int size;
+        int root = -1;
+
+        Builder(int capacity) {
+            int c = Math.max(16, capacity);
+            split = new char[c];
+            lo = new int[c];
+            eq = new int[c];
+            hi = new int[c];
+        }
+
+        void insertBalanced(List<Map.Entry<String, BitSet>> entries, int from, int to) {
+            if (from >= to) return;
+            int mid = (from + to) >>> 1;
+            insert(entries.get(mid).getKey(), entries.get(mid).getValue().stream().toArray());
+            insertBalanced(entries, from, mid);
+            insertBalanced(entries, mid + 1, to);
+        }
+
+        void insert(String key, int[] ranks) {
+            if (root < 0) root = node(key.charAt(0));
+            int n = root;
+            int i = 0;
+            while (true) {
+                char c = key.charAt(i);
+                int next;
+                if (c < split[n]) {
+                    if (lo[n] < 0) { next = node(c); lo[n] = next; }
+                    n = lo[n];
+                } else if (c > split[n]) {
+                    if (hi[n] < 0) { next = node(c); hi[n] = next; }
+                    n = hi[n];
+                } else if (i + 1 < key.length()) {
+                    i++;
+                    if (eq[n] < 0) { next = node(key.charAt(i)); eq[n] = next; }
+                    n = eq[n];
+                } else {
+                    terminal.set(n, ranks);
+                    return;
+                }
+            }
+        }
+
+        // ノードを1つ足す（配列を伸ばすので、呼び出し側は戻り値を受けてから書き込む）
+        int node(char c) {
+            if (size == split.length) {
+                int c2 = size * 2;
+                split = Arrays.copyOf(split, c2);
+                lo = Arrays.copyOf(lo, c2);
+                eq = Arrays.copyOf(eq, c2);
+                hi = Arrays.copyOf(hi, c2);
+            }
+            split[size] = c;
+            lo[size] = -1;
+            eq[size] = -1;
+            hi[size] = -1;
+            terminal.add(null);
+            return size++;
+        }
+    }
+
+    // ===== ローマ字読み =====
+
+    private static final String KANA =
+            "あいうえおかきくけこさしすせそたちつてとなにぬねのはひふへほまみむめもやゆよらりるれろわをん"
+                    + "がぎぐげござじずぜぞだぢづでどばびぶべぼぱぴぷぺぽゔ";
+    private static final String[] KANA_ROMAJI = (
+            "a i u e o ka ki ku ke ko sa shi su se so ta chi tsu te to na ni nu ne no "
+                    + "ha hi fu he ho ma mi mu me mo ya yu yo ra ri ru re ro wa o n "
+                    + "ga gi gu ge go za ji zu ze zo da ji zu de do ba bi bu be bo pa pi pu pe po vu").split(" ");
+    private static final Map<Character, String> ROMAJI = new HashMap<>();
+    static {
+        for (int i = 0; i < KANA.length(); i++) ROMAJI.put(KANA.charAt(i), KANA_ROMAJI[i]);
+    }
+
+    /*
+     * ひらがなのヘボン式ローマ字（長音符は落とす：りりー → riri）。かな・英数字以外を含めば null
+     */
+    static String romaji(String hiragana) {
+        StringBuilder sb = new StringBuilder(hiragana.length() * 2);
+        boolean doubleNext = false;
+        for (int i = 0; i < hiragana.length(); i++) {
+            char c = hiragana.charAt(i);
+            if (c == 'っ') {
+                doubleNext = true;
+                continue;
+            }
+            String r;
+            if (c == 'ー') {
+                continue;
+            } else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                r = String.valueOf(c);
+            } else if ("ぁぃぅぇぉ".indexOf(c) >= 0) {
+                // ふぁ → fa、てぃ → ti（直前の母音を置き換える）。単独なら母音
+                String v = ROMAJI.get((char) (c + 1));
+                if (sb.length() > 0 && isVowel(sb.charAt(sb.length() - 1))) sb.setLength(sb.length() - 1);
+                r = v;
+            } else if ("ゃゅょ".indexOf(c) >= 0) {
+                // きゃ → kya、しゃ → sha、ちゃ → cha、じゃ → ja
+                String v = ROMAJI.get((char) (c + 1)).substring(1);
+                int len = sb.length();
+                if (len > 0 && sb.charAt(len - 1) == 'i') {
+                    sb.setLength(len - 1);
+                    String head = sb.substring(Math.max(0, len - 3), len - 1);
+                    boolean palatal = head.endsWith("sh") || head.endsWith("ch") || head.endsWith("j");
+                    r = palatal ? v : "y" + v;
+                } else {
+                    r = "y" + v;
+                }
+            } else {
+                r = ROMAJI.get(c);
+                if (r == null) return null;
+            }
+            if (doubleNext) {
+                // っち → tchi、それ以外は次の子音を重ねる
+                char first = r.charAt(0);
+                if (r.startsWith("ch")) sb.append('t');
+                else if (!isVowel(first)) sb.append(first);
+                doubleNext = false;
+            }
+            sb.append(r);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'a' || c == 'i' || c == 'u' || c == 'e' || c == 'o';
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.redpandaapp.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.example.redpandaapp.model.RedPanda;
+
+/*
+ * 図鑑カード一覧の検索インデックス（スナップショットごとに作成・不変）
+ * 在園 / 過去在園 を生年月日降順に並べた順で通し番号を振り、
+ * 検索対象5項目（名前・父・母・特徴・来園元）を NameNormalizer.fold で畳み込んだ
+ * 文字バイグラム → 通し番号（昇順）の転置リストを持つ。
+ * 検索は転置リストの積集合を取るだけで、結果は並び順のまま在園・過去在園に分かれる。
+ */
+public final class PandaSearchIndex {
+
+    private static final List<Function<RedPanda, String>> FIELDS = List.of(
+            RedPanda::getName, RedPanda::getFather, RedPanda::getMother,
+            RedPanda::getFeature, RedPanda::getOriginZoo);
+
+    // 並び順の全個体（在園 → 過去在園）
+    private final RedPanda[] ordered;
+    private final int inParkCount;
+    private final List<RedPanda> inPark;
+    private final List<RedPanda> past;
+
+    // 通し番号 → 畳み込み済みの検索対象項目
+    private final String[][] folded;
+    private final Map<String, int[]> postings;
+
+    /** 検索結果（並び順のまま） */
+    public record Result(List<RedPanda> inPark, List<RedPanda> past) {}
+
+    public PandaSearchIndex(List<RedPanda> pandas) {
+        Comparator<RedPanda> byBirthDesc = Comparator.comparing(RedPanda::getBirthDate, nullsLastDesc());
+        List<RedPanda> in = pandas.stream().filter(PandaSearchIndex::isInPark).sorted(byBirthDesc).toList();
+        List<RedPanda> out = pandas.stream().filter(p -> !isInPark(p)).sorted(byBirthDesc).toList();
+
+        this.inPark = in;
+        this.past = out;
+        this.inParkCount = in.size();
+        this.ordered = new RedPanda[in.size() + out.size()];
+        for (int i = 0; i < in.size(); i++) ordered[i] = in.get(i);
+        for (int i = 0; i < out.size(); i++) ordered[inParkCount + i] = out.get(i);
+
+        this.folded = new String[ordered.length][];
+        Map<String, List<Integer>> grams = new HashMap<>();
+        for (int i = 0; i < ordered.length; i++) {
+            String[] fields = new String[FIELDS.size()];
+            for (int f = 0; f < fields.length; f++) {
+                fields[f] = NameNormalizer.fold(FIELDS.get(f).apply(ordered[i]));
+                for (String g : bigrams(fields[f])) {
+                    List<Integer> list = grams.computeIfAbsent(g, k -> new ArrayList<>());
+                    if (list.isEmpty() || list.get(list.size() - 1) != i) list.add(i);
+                }
+            }
+            folded[i] = fields;
+        }
+
+        this.postings = new HashMap<>(grams.size() * 2);
+        grams.forEach((g, list) -> postings.put(g, list.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /*
+     * いずれかの項目に q を含む個体（全角/半角・カタカナ/ひらがな・大文字/小文字を区別しない）
+     */
+    public Result search(String q) {
+        String query = NameNormalizer.fold(q);
+        if (query.isEmpty()) return new Result(inPark, past);
+
+        List<RedPanda> in = new ArrayList<>();
+        List<RedPanda> out = new ArrayList<>();
+
+        if (query.length() == 1) {
+            // 1文字はバイグラムが無いので全件を確認（個体数は少ない）
+            for (int i = 0; i < ordered.length; i++) {
+                if (matches(i, query)) (i < inParkCount ? in : out).add(ordered[i]);
+            }
+            return new Result(in, out);
+        }
+
+        int[][] lists = bigrams(query).stream()
+                .map(g -> postings.getOrDefault(g, new int[0]))
+                .sorted(Comparator.comparingInt(a -> a.length))
+                .toArray(int[][]::new);
+
+        for (int i : lists[0]) {
+            if (!containsAll(lists, i)) continue;
+            if (!matches(i, query)) continue;
+            (i < inParkCount ? in : out).add(ordered[i]);
+        }
+        return new Result(in, out);
+    }
+
+    // バイグラムは項目をまたいで一致しうるので、最後に項目単位で確認する
+    private boolean matches(int i, String query) {
+        for (String field : folded[i]) {
+            if (field.contains(query)) return true;
+        }
+        return false;
+    }
+
+    private static boolean containsAll(int[][] lists, int i) {
+        for (int k = 1; k < lists.length; k++) {
+            if (Arrays.binarySearch(lists[k], i) < 0) return false;
+        }
+        return true;
+    }
+
+    private static Set<String> bigrams(String s) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 1 < s.length(); i++) {
+            grams.add(s.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private static boolean isInPark(RedPanda p) {
+        return isBlank(p.getDeathDate()) && isBlank(p.getMovedOutDate());
+    }
+
+    private static boolean isBlank(String s) { return s == null || s.isBlank(); }
+
+    private static Comparator<String> nullsLastDesc() {
+        return Comparator.nullsLast(Comparator.<String>naturalOrder()).reversed();
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.redpandaapp.service;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.redpandaapp.model.RedPanda;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * レッサーパンダ個体データのレジストリ
+ * 取得元（園ごとの CKAN の Excel）をリクエストごとに取得せず、まとめた不変スナップショットをメモリに保持する。
+ * 定期的に各取得元を並行して条件付きGET（ETag / If-Modified-Since）で再取得し、どれかに変更があれば
+ * 取得元の並び順に正規化した名前ごとに1件へまとめて、スナップショットを差し替える。
+ * 詳細ページ・家系図・日記の個体名・候補はどれも名前で個体を引くので、同名の個体は先の取得元のものだけを残す。
+ * 取得は RemoteFetcher 経由（期限付き・取得元の URL ごとのブレーカー）。失敗した取得元は前回の結果を使い続け、
+ * 同じホストの他の取得元も待たせない。
+ */
+@Service
+public class RedPandaRegistry implements DisposableBean {
+
+    private final ExcelImportService excelImportService;
+    private final RemoteFetcher fetcher;
+    private final MeterRegistry meterRegistry;
+
+    private final List<SourceState> sources;
+    // 1回の取得（接続〜受信）の期限。遅い・止まった接続で定期取得を抱え込まない
+    private final RemoteFetcher.Policy fetchPolicy;
+
+    // 取得元ごとの取得・読込は仮想スレッドで並行に行い、同時に動かす数だけセマフォで抑える
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore fetchPermits;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    // 取得中は HTTP を待つので synchronized ではなく ReentrantLock（仮想スレッドを固定しない）
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final ReentrantLock backupLock = new ReentrantLock();
+
+    public RedPandaRegistry(ExcelImportService excelImportService, RemoteFetcher fetcher, MeterRegistry meterRegistry,
+                            @Value("${app.redpanda.sources:}") String sources,
+                            @Value("${app.redpanda.excel-url:}") String excelUrl,
+                            @Value("${app.redpanda.fetch-timeout:PT20S}") Duration fetchTimeout,
+                            @Value("${app.redpanda.fetch-concurrency:4}") int fetchConcurrency) {
+        this.excelImportService = excelImportService;
+        this.fetcher = fetcher;
+        this.meterRegistry = meterRegistry;
+        this.sources = parseSources(sources, excelUrl).stream().map(SourceState::new).toList();
+        if (this.sources.isEmpty()) {
+            throw new IllegalStateException("app.redpanda.sources に取得元がありません");
+        }
+        // 取得元は同じ CKAN に並ぶことが多いので、ブレーカーはホストではなく URL ごとにする
+        this.fetchPolicy = new RemoteFetcher.Policy(fetchTimeout, Duration.ZERO, Duration.ZERO,
+                RemoteFetcher.BreakerScope.URL);
+        this.fetchPermits = new Semaphore(Math.max(1, fetchConcurrency));
+    }
+
+    /** 個体データの不変スナップショット */
+    public record Snapshot(long version,
+                           List<RedPanda> pandas,
+                           Map<String, RedPanda> byName,
+                           List<RedPanda> postables,
+                           PandaSearchIndex searchIndex,
+                           PandaNameSuggester suggester,
+                           PandaGenealogy genealogy,
+                           Instant loadedAt,
+                           boolean fromBackup) {
+
+        public Optional<RedPanda> find(String name) {
+            return Optional.ofNullable(name == null ? null : byName.get(name));
+        }
+    }
+
+    /** 取得元（app.redpanda.sources の1件） */
+    public record Source(String id, String url) {}
+
+    /*
+     * 取得元ごとの状態
+     * state: ok（直近の取得で最新を確認）/ stale（直近は失敗、前回の結果を使用中）/
+     *        backup（同梱のバックアップを使用中）/ failed（使える結果が無い）/ pending（未取得）
+     */
+    public record SourceStatus(String id,
+                               String url,
+                               String state,
+                               int pandas,
+                               Instant lastAttemptAt,
+                               Instant lastSuccessAt,
+                               String lastError) {}
+
+    /*
+     * 現在のスナップショットを取得
+     * 未ロードならビルド時に変換したバックアップを即座に読み込んで返し、
+     * 取得元からの取得は定期再取得（起動直後にバックグラウンドで実行）に任せる。
+     */
+    public Snapshot current() {
+        Snapshot snap = current.get();
+        if (snap != null) return snap;
+
+        backupLock.lock();
+        try {
+            snap = current.get();
+            if (snap == null) {
+                // 取得が先に終わっていればそちらを優先する
+                if (current.compareAndSet(null, snapshot(loadBackup(), true))) {
+                    ExcelImportService.countBackupFallback(meterRegistry, "cold_start");
+                }
+                snap = current.get();
+            }
+        } finally {
+            backupLock.unlock();
+        }
+        return snap;
+    }
+
+    /** 取得元ごとの状態（設定の並び順） */
+    public List<SourceStatus> sourceStatuses() {
+        return sources.stream().map(s -> s.status).toList();
+    }
+
+    /*
+     * 起動直後と以降の定期再取得。取得元は並行に取り、失敗した取得元は直前の結果を使い続ける。
+     * バックアップExcel（先頭の取得元のもの）に落ちるのは、その取得元がまだ一度も取れていないときだけ。
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.redpanda.refresh-interval:PT30M}")
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            List<Future<Boolean>> tasks = new ArrayList<>(sources.size());
+            for (SourceState s : sources) {
+                tasks.add(executor.submit(() -> refreshSource(s)));
+            }
+            boolean changed = false;
+            for (Future<Boolean> task : tasks) {
+                try {
+                    changed |= task.get();
+                } catch (ExecutionException e) {
+                    // refreshSource は失敗を状態に残して false を返すので、ここには来ない
+                }
+            }
+            if (changed || current.get() == null) {
+                publish();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // 1取得元の再取得。変更があって結果を差し替えたら true
+    private boolean refreshSource(SourceState s) {
+        Instant attempt = Instant.now();
+        // 取得全体（接続〜受信〜読込）の時間。読込だけの時間は redpanda.excel.parse
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            fetchPermits.acquire();
+            try {
+                boolean updated = fetchRemote(s, attempt);
+                outcome = updated ? "updated" : "not_modified";
+                return updated;
+            } finally {
+                fetchPermits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            s.failed(attempt, "中断されました");
+            return false;
+        } catch (Exception e) {
+            s.failed(attempt, e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+            // 一度も取れていない先頭の取得元は、同梱のバックアップで埋める
+            if (s == sources.get(0) && s.pandas == null) {
+                s.backup(loadBackup(), attempt);
+                ExcelImportService.countBackupFallback(meterRegistry, "fetch_failed");
+                return true;
+            }
+            return false;
+        } finally {
+            sample.stop(meterRegistry.timer("redpanda.excel.fetch", "source", s.source.id(), "outcome", outcome));
+        }
+    }
+
+    // 変更があって差し替えたら true
+    private boolean fetchRemote(SourceState s, Instant attempt) throws Exception {
+        // 毎回条件付きで取り直す（前回の ETag / Last-Modified は RemoteFetcher が持っている）
+        RemoteFetcher.Response res = fetcher.get(s.source.url(), fetchPolicy);
+        if (!res.isSuccess()) {
+            throw new IllegalStateException("Excel の取得に失敗しました: HTTP " + res.status());
+        }
+        if (res.fallback()) {
+            throw new IllegalStateException("取得元が応答しないため、前回の結果を使っています");
+        }
+        // 304 なら変更なし。バックアップで埋めていた取得元は常に差し替える
+        if (s.pandas != null && !s.fromBackup && s.generation == res.generation()) {
+            s.confirmed(attempt);
+            return false;
+        }
+
+        List<RedPanda> list = excelImportService.parseExcel(new ByteArrayInputStream(res.body()));
+        s.loaded(list, res.generation(), attempt);
+        return true;
+    }
+
+    // 各取得元の最新の結果をまとめてスナップショットを差し替える
+    private void publish() {
+        List<List<RedPanda>> lists = new ArrayList<>(sources.size());
+        boolean fromBackup = false;
+        for (SourceState s : sources) {
+            if (s.pandas == null) continue;
+            lists.add(s.pandas);
+            fromBackup |= s.fromBackup;
+        }
+        current.set(snapshot(merge(lists), fromBackup));
+    }
+
+    /*
+     * 取得元の並び順に結合し、正規化した名前が同じ個体は先に出たものだけを残す
+     * （同じ個体が複数の園のデータに載っていても1件になる。来園元の違う同名の個体も、
+     *  名前で引く先が1つしか無いので先の取得元を優先する。名前の無い行はそのまま残す）
+     */
+    static List<RedPanda> merge(List<List<RedPanda>> lists) {
+        List<RedPanda> merged = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (List<RedPanda> list : lists) {
+            for (RedPanda p : list) {
+                String name = NameNormalizer.normalizeName(p.getName());
+                if (name.isEmpty() || seen.add(name)) {
+                    merged.add(p);
+                }
+            }
+        }
+        return merged;
+    }
+
+    /*
+     * 取得元の設定（"id=URL" をカンマ区切り）。未設定なら従来の app.redpanda.excel-url を1件として使う
+     */
+    static List<Source> parseSources(String sources, String excelUrl) {
+        List<Source> list = new ArrayList<>();
+        if (sources != null) {
+            for (String entry : sources.split(",")) {
+                String e = entry.trim();
+                if (e.isEmpty()) continue;
+                int eq = e.indexOf('=');
+                // id を省いた URL だけの指定は連番の id にする（URL のクエリの = は区切りと見なさない）
+                if (eq > 0 && !e.startsWith("http")) {
+                    list.add(new Source(e.substring(0, eq).trim(), e.substring(eq + 1).trim()));
+                } else {
+                    list.add(new Source("source" + (list.size() + 1), e));
+                }
+            }
+        }
+        if (list.isEmpty() && excelUrl != null && !excelUrl.isBlank()) {
+            list.add(new Source("default", excelUrl.trim()));
+        }
+        return list;
+    }
+
+    private List<RedPanda> loadBackup() {
+        try {
+            return excelImportService.loadBackup();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return List.of();
+        }
+    }
+
+    private Snapshot snapshot(List<RedPanda> list, boolean fromBackup) {
+        // 同名個体は先頭を優先（従来の findFirst と同じ）
+        Map<String, RedPanda> byName = new LinkedHashMap<>();
+        for (RedPanda p : list) {
+            if (p.getName() != null) byName.putIfAbsent(p.getName(), p);
+        }
+        List<RedPanda> postables = list.stream()
+                .filter(p -> isBlank(p.getDeathDate()))     // 死亡日なし
+                .filter(p -> isBlank(p.getMovedOutDate()))  // 他園移動日なし
+                .toList();
+
+        return new Snapshot(versions.incrementAndGet(),
+                List.copyOf(list),
+                Collections.unmodifiableMap(byName),
+                postables,
+                new PandaSearchIndex(list),
+                new PandaNameSuggester(list),
+                new PandaGenealogy(list),
+                Instant.now(),
+                fromBackup);
+    }
+
+    private boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /** 取得元1件の状態（書き換えは refresh の中でその取得元の担当だけが行う） */
+    private static final class SourceState {
+        final Source source;
+        volatile List<RedPanda> pandas;
+        volatile boolean fromBackup;
+        long generation;
+        volatile SourceStatus status;
+
+        SourceState(Source source) {
+            this.source = source;
+            this.status = new SourceStatus(source.id(), source.url(), "pending", 0, null, null, null);
+        }
+
+        void loaded(List<RedPanda> list, long generation, Instant at) {
+            this.pandas = list;
+            this.fromBackup = false;
+            this.generation = generation;
+            confirmed(at);
+        }
+
+        void confirmed(Instant at) {
+            status = new SourceStatus(source.id(), source.url(), "ok", size(), at, at, null);
+        }
+
+        void backup(List<RedPanda> list, Instant at) {
+            this.pandas = list;
+            this.fromBackup = true;
+            status = new SourceStatus(source.id(), source.url(), "backup", size(), at,
+                    status.lastSuccessAt(), status.lastError());
+        }
+
+        void failed(Instant at, String error) {
+            String state = (pandas == null) ? "failed" : fromBackup ? "backup" : "stale";
+            status = new SourceStatus(source.id(), source.url(), state, size(), at, status.lastSuccessAt(), error);
+        }
+
+        private int size() {
+            List<RedPanda> p = pandas;
+            return p == null ? 0 : p.size();
+        }
+    }
+}
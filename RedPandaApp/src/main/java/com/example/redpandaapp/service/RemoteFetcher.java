@@ -0,0 +1,375 @@
+package com.example.redpandaapp.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * 外部（CKAN・GCS）への取得の共通窓口
+ * - 取得ごとに全体の期限を設け、過ぎたら接続ごと打ち切る（遅い相手にスレッドを取られない）
+ * - ホストごと（Policy で URL ごとにもできる）のサーキットブレーカー。失敗が続いたら一定時間は問い合わせず、手元の最後の結果を返す
+ * - 同じ URL の取得は同時に1本だけ（後から来た要求は先行の結果を待つ）
+ * - 鮮度切れでも stale-while-revalidate の間は手元の結果をすぐ返し、裏で取り直す
+ * - 手元に結果があれば ETag / Last-Modified で条件付きに取り直す（304 なら同じ結果を使い続ける）
+ * 4xx は「そういう結果」として扱い、失敗に数えるのは接続・期限切れ・5xx・429 だけ。
+ */
+@Service
+public class RemoteFetcher implements DisposableBean {
+
+    private final ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client;
+    private final ExecutorService revalidators = Executors.newVirtualThreadPerTaskExecutor();
+    private final MeterRegistry meterRegistry;
+
+    private final int maxEntries;
+    private final int breakerFailures;
+    private final long breakerCooldownNanos;
+
+    // 取得結果（アクセス順で件数上限）。lock で守る
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<Key, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+
+    public RemoteFetcher(MeterRegistry meterRegistry,
+                         @Value("${app.fetch.connect-timeout:PT2S}") Duration connectTimeout,
+                         @Value("${app.fetch.max-entries:20000}") int maxEntries,
+                         @Value("${app.fetch.breaker.failures:5}") int breakerFailures,
+                         @Value("${app.fetch.breaker.cooldown:PT30S}") Duration breakerCooldown) {
+        this.meterRegistry = meterRegistry;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(httpExecutor)
+                .build();
+        this.maxEntries = maxEntries;
+        this.breakerFailures = breakerFailures;
+        this.breakerCooldownNanos = breakerCooldown.toNanos();
+    }
+
+    /*
+     * 取得の方針
+     * timeout: 1回の取得（接続〜本文の受信まで）の期限
+     * fresh: この間は取り直さない
+     * staleWhileRevalidate: fresh を過ぎてもこの間は手元の結果を返し、裏で取り直す
+     * breakerScope: ブレーカーをホスト単位で共有するか、URL ごとに分けるか
+     */
+    public record Policy(Duration timeout, Duration fresh, Duration staleWhileRevalidate, BreakerScope breakerScope) {
+
+        public Policy(Duration timeout, Duration fresh, Duration staleWhileRevalidate) {
+            this(timeout, fresh, staleWhileRevalidate, BreakerScope.HOST);
+        }
+    }
+
+    /*
+     * ブレーカーの単位
+     * HOST: 同じホストへの取得はまとめて止める（GCS のように URL が多く、落ちるときはホストごと落ちる相手）
+     * URL: URL ごとに止める（同じ CKAN に複数の取得元があり、1つが壊れても他は取れる相手）
+     */
+    public enum BreakerScope { HOST, URL }
+
+    /*
+     * 取得結果（generation は本文が変わるたびに増える。304 では変わらない）
+     * fallback は、取得に失敗したため最後に取れた結果を返したことを表す
+     */
+    public record Response(int status, byte[] body, String etag, long lastModified, long generation, Instant fetchedAt,
+                           boolean fallback) {
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+
+        Response asFallback() {
+            return new Response(status, body, etag, lastModified, generation, fetchedAt, true);
+        }
+    }
+
+    /** ブレーカーが開いていて問い合わせなかった（手元に結果も無い） */
+    public static class CircuitOpenException extends IOException {
+        public CircuitOpenException(String host) {
+            super("接続先が応答しないため問い合わせを止めています: " + host);
+        }
+    }
+
+    public Response get(String url, Policy policy) throws IOException {
+        return fetch(new Key("GET", url), policy);
+    }
+
+    public Response head(String url, Policy policy) throws IOException {
+        return fetch(new Key("HEAD", url), policy);
+    }
+
+    private Response fetch(Key key, Policy policy) throws IOException {
+        Entry cached = lookup(key);
+        if (cached != null) {
+            long age = System.nanoTime() - cached.validatedAt;
+            if (age < policy.fresh().toNanos()) {
+                count(key, "fresh");
+                return cached.response;
+            }
+            if (age < policy.fresh().plus(policy.staleWhileRevalidate()).toNanos()) {
+                count(key, "stale");
+                revalidators.execute(() -> {
+                    try {
+                        load(key, cached, policy);
+                    } catch (IOException | RuntimeException ignore) {
+                        // 次の要求でまた取り直す
+                    }
+                });
+                return cached.response;
+            }
+        }
+
+        try {
+            return load(key, cached, policy).response;
+        } catch (IOException e) {
+            // 取れなければ最後に取れた結果を使う
+            if (cached != null) {
+                count(key, "fallback");
+                return cached.response.asFallback();
+            }
+            throw e;
+        }
+    }
+
+    // 同じ key の取得は1本にまとめる
+    private Entry load(Key key, Entry cached, Policy policy) throws IOException {
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return await(running, policy.timeout());
+        }
+
+        try {
+            Entry e = request(key, cached, policy);
+            mine.complete(e);
+            return e;
+        } catch (IOException | RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Entry request(Key key, Entry cached, Policy policy) throws IOException {
+        URI uri = URI.create(key.url());
+        String host = uri.getHost() == null ? "" : uri.getHost();
+        String breakerKey = (policy.breakerScope() == BreakerScope.URL) ? host + " " + key.url() : host;
+        Breaker breaker = breakers.computeIfAbsent(breakerKey, h -> new Breaker());
+        if (!breaker.tryPass()) {
+            count(key, "short_circuit");
+            throw new CircuitOpenException(policy.breakerScope() == BreakerScope.URL ? key.url() : host);
+        }
+
+        HttpRequest.Builder req = HttpRequest.newBuilder(uri)
+                .timeout(policy.timeout())
+                .method(key.method(), HttpRequest.BodyPublishers.noBody());
+        if (cached != null && cached.response.isSuccess()) {
+            if (cached.response.etag() != null) {
+                req.header("If-None-Match", cached.response.etag());
+            } else if (cached.response.lastModified() > 0) {
+                req.header("If-Modified-Since", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        Instant.ofEpochMilli(cached.response.lastModified()).atZone(ZoneOffset.UTC)));
+            }
+        }
+
+        // 応答ヘッダまでの期限は HttpRequest.timeout、本文を含めた全体の期限はここで打ち切る
+        CompletableFuture<HttpResponse<byte[]>> call = client.sendAsync(req.build(), HttpResponse.BodyHandlers.ofByteArray());
+        HttpResponse<byte[]> res;
+        try {
+            res = call.get(policy.timeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            breaker.onFailure();
+            count(key, "timeout");
+            throw new IOException("期限内に応答がありませんでした: " + key.url(), e);
+        } catch (InterruptedException e) {
+            // 呼び出し側の都合（ページの期限切れなど）なので、相手の失敗には数えない
+            call.cancel(true);
+            breaker.release();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("取得が中断されました: " + key.url());
+        } catch (ExecutionException e) {
+            breaker.onFailure();
+            count(key, "error");
+            throw new IOException("取得に失敗しました: " + key.url(), e.getCause());
+        }
+
+        int status = res.statusCode();
+        if (status >= 500 || status == 429) {
+            breaker.onFailure();
+            count(key, "error");
+            throw new IOException("取得に失敗しました: HTTP " + status + " " + key.url());
+        }
+        breaker.onSuccess();
+
+        Entry e;
+        if (status == 304 && cached != null) {
+            count(key, "not_modified");
+            e = new Entry(cached.response, System.nanoTime());
+        } else {
+            count(key, "fetched");
+            e = new Entry(new Response(status, res.body(),
+                    res.headers().firstValue("ETag").orElse(null),
+                    lastModified(res.headers().firstValue("Last-Modified").orElse(null)),
+                    generations.incrementAndGet(),
+                    Instant.now(),
+                    false), System.nanoTime());
+        }
+        put(key, e);
+        return e;
+    }
+
+    private static Entry await(CompletableFuture<Entry> running, Duration timeout) throws IOException {
+        try {
+            return running.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("先行する取得が期限内に終わりませんでした", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("取得待ちが中断されました");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static long lastModified(String header) {
+        if (header == null) return 0L;
+        try {
+            return ZonedDateTime.parse(header, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0L;
+        }
+    }
+
+    private void count(Key key, String result) {
+        String host = URI.create(key.url()).getHost();
+        meterRegistry.counter("redpanda.fetch", "host", host == null ? "" : host,
+                "method", key.method(), "result", result).increment();
+    }
+
+    // ===== 取得結果の保持（件数上限付きの LRU） =====
+
+    private Entry lookup(Key key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(Key key, Entry e) {
+        lock.lock();
+        try {
+            entries.put(key, e);
+            if (entries.size() > maxEntries) {
+                var it = entries.keySet().iterator();
+                it.next();
+                it.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        revalidators.shutdownNow();
+        httpExecutor.shutdownNow();
+    }
+
+    private record Key(String method, String url) {}
+
+    private record Entry(Response response, long validatedAt) {}
+
+    /*
+     * ホスト（または URL）ごとのサーキットブレーカー
+     * 連続 breakerFailures 回の失敗で開き、cooldown の後に1件だけ試す（成功で閉じ、失敗でまた開く）
+     */
+    private final class Breaker {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int failures;
+        private long openUntil;
+        private boolean open;
+        private boolean trial;
+
+        boolean tryPass() {
+            lock.lock();
+            try {
+                if (!open) return true;
+                if (trial || System.nanoTime() - openUntil < 0) return false;
+                trial = true;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onSuccess() {
+            lock.lock();
+            try {
+                failures = 0;
+                open = false;
+                trial = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // 試しの1件を結果なしで終えた（次の要求がまた試せるようにする）
+        void release() {
+            lock.lock();
+            try {
+                trial = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onFailure() {
+            lock.lock();
+            try {
+                failures++;
+                if (trial || failures >= breakerFailures) {
+                    open = true;
+                    trial = false;
+                    openUntil = System.nanoTime() + breakerCooldownNanos;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.redpandaapp.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/*
+ * 写真投稿の受付制御
+ * 1. クライアントごとのトークンバケット（短時間の連投を制限）
+ * 2. 全体の同時処理数のセマフォ（空きを少しだけ待ち、待ち行列が長ければ即座に断る）
+ * のどちらかで断った場合は、呼び出し側が 429 と Retry-After を返す。
+ * バケットは件数上限付きの分割マップに持ち、古いクライアントから捨てる（メモリは一定）。
+ */
+@Service
+public class UploadAdmissionControl {
+
+    private static final int STRIPES = 16;
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long queueWaitNanos;
+
+    private final double burst;
+    private final double tokensPerNano;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedRate = new AtomicLong();
+    private final AtomicLong rejectedBusy = new AtomicLong();
+
+    public UploadAdmissionControl(@Value("${app.upload.max-concurrent:4}") int maxConcurrent,
+                                  @Value("${app.upload.max-queued:8}") int maxQueued,
+                                  @Value("${app.upload.queue-wait:PT2S}") Duration queueWait,
+                                  @Value("${app.upload.rate.burst:5}") int burst,
+                                  @Value("${app.upload.rate.per-minute:10}") int perMinute,
+                                  @Value("${app.upload.rate.max-clients:10000}") int maxClients) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.queueWaitNanos = queueWait.toNanos();
+        this.burst = burst;
+        this.tokensPerNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(Math.max(1, maxClients / STRIPES));
+        }
+    }
+
+    /** 受付結果（admitted なら処理後に必ず release する） */
+    public record Decision(boolean admitted, long retryAfterSeconds, String reason) {}
+
+    /** 受付の統計 */
+    public record Stats(int queued, int inFlight, long admitted, long rejectedRate, long rejectedBusy) {}
+
+    private static final Decision ADMITTED = new Decision(true, 0, null);
+
+    /*
+     * client（IPなど）の投稿を受け付けるか判定。受け付けたら同時処理枠を1つ確保した状態で返る。
+     * 混雑（busy）で断ったときは取ったトークンを戻す（受け付けていない投稿で連投制限にかからないように）
+     */
+    public Decision tryAdmit(String client) throws InterruptedException {
+        Stripe stripe = stripeFor(client);
+        long wait = stripe.take(client, System.nanoTime());
+        if (wait > 0) {
+            rejectedRate.incrementAndGet();
+            return new Decision(false, seconds(wait), "rate");
+        }
+
+        boolean acquired = false;
+        try {
+            acquired = permits.tryAcquire() || awaitPermit();
+        } finally {
+            if (!acquired) stripe.giveBack(client);
+        }
+        if (!acquired) {
+            rejectedBusy.incrementAndGet();
+            return new Decision(false, 1, "busy");
+        }
+        admitted.incrementAndGet();
+        return ADMITTED;
+    }
+
+    // 空きを少しだけ待つ（待ち行列が一杯なら待たずに false）
+    private boolean awaitPermit() throws InterruptedException {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(queueWaitNanos, TimeUnit.NANOSECONDS);
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public Stats stats() {
+        return new Stats(queued.get(), inFlight(), admitted.get(), rejectedRate.get(), rejectedBusy.get());
+    }
+
+    // 処理中の件数（枠の総数 − 空き）
+    private int inFlight() {
+        return Math.max(0, maxConcurrent - permits.availablePermits());
+    }
+
+    private Stripe stripeFor(String client) {
+        return stripes[Math.floorMod(client.hashCode(), STRIPES)];
+    }
+
+    private static long seconds(long nanos) {
+        return Math.max(1, (nanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    /*
+     * マップの1区画（区画ごとにロックし、件数上限を超えたら最も長く使われていないクライアントを捨てる）
+     */
+    private final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Bucket> buckets;
+
+        Stripe(int capacity) {
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        // トークンを1つ取る。足りなければ次の1つが貯まるまでの時間（ns）
+        long take(String client, long now) {
+            lock.lock();
+            try {
+                Bucket b = buckets.computeIfAbsent(client, k -> new Bucket(burst, now));
+                b.tokens = Math.min(burst, b.tokens + (now - b.refilledAt) * tokensPerNano);
+                b.refilledAt = now;
+                if (b.tokens >= 1) {
+                    b.tokens -= 1;
+                    return 0;
+                }
+                return (long) Math.ceil((1 - b.tokens) / tokensPerNano);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // take で取ったトークンを戻す（その間に捨てられたクライアントは何もしない）
+        void giveBack(String client) {
+            lock.lock();
+            try {
+                Bucket b = buckets.get(client);
+                if (b != null) b.tokens = Math.min(burst, b.tokens + 1);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Bucket {
+        double tokens;
+        long refilledAt;
+
+        Bucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+}
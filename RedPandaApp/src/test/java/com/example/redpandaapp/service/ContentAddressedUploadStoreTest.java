@@ -0,0 +1,128 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.redpandaapp.repository.StoredImageRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// 別スレッドからの保存を見るため、テスト自体はトランザクションで囲まない
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class ContentAddressedUploadStoreTest {
+
+	@Autowired
+	StoredImageRepository repo;
+
+	@TempDir
+	Path dir;
+
+	@AfterEach
+	void cleanUp() {
+		repo.deleteAll();
+	}
+
+	@Test
+	void concurrentFirstRetainsCountEveryPost() throws Exception {
+		ContentAddressedUploadStore store = new ContentAddressedUploadStore(
+				dir.toString(), null, repo, new SimpleMeterRegistry());
+		int threads = 8;
+
+		for (int round = 0; round < 5; round++) {
+			String hash = "%064x".formatted(round);
+			ContentAddressedUploadStore.Stored stored =
+					new ContentAddressedUploadStore.Stored(hash, hash + ".jpg", 10, null, null, false);
+
+			// 行がまだ無い状態から同時に数える
+			CountDownLatch start = new CountDownLatch(1);
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<?>> done = new ArrayList<>();
+				for (int i = 0; i < threads; i++) {
+					done.add(pool.submit(() -> {
+						start.await();
+						store.retain(stored);
+						return null;
+					}));
+				}
+				start.countDown();
+				for (Future<?> f : done) {
+					f.get();
+				}
+			} finally {
+				pool.shutdown();
+			}
+
+			assertThat(repo.findById(hash).orElseThrow().getRefCount()).isEqualTo(threads);
+		}
+	}
+
+	@Test
+	void sameBytesUnderDifferentNamesShareOneFile() throws Exception {
+		ContentAddressedUploadStore store = new ContentAddressedUploadStore(
+				dir.toString(), new ImageVariantService(), repo, new SimpleMeterRegistry());
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "png", png);
+
+		// 拡張子はファイル名ではなく中身（PNG）で決まる
+		List<ContentAddressedUploadStore.Stored> stored = new ArrayList<>();
+		for (String name : List.of("a.jpg", "b.JPEG", "c")) {
+			ContentAddressedUploadStore.Stored s =
+					store.store(new MockMultipartFile("image", name, "image/jpeg", png.toByteArray()));
+			store.retain(s);
+			stored.add(s);
+		}
+
+		String filename = stored.get(0).hash() + ".png";
+		assertThat(stored).extracting(ContentAddressedUploadStore.Stored::filename).containsOnly(filename);
+		assertThat(stored).extracting(ContentAddressedUploadStore.Stored::duplicate).containsExactly(false, true, true);
+		assertThat(repo.findById(stored.get(0).hash()).orElseThrow().getRefCount()).isEqualTo(3);
+		assertThat(repo.findById(stored.get(0).hash()).orElseThrow().getFilename()).isEqualTo(filename);
+
+		// 配信ディレクトリには元画像と縮小画像だけが残る（一時ファイルは別のディレクトリ）
+		try (Stream<Path> files = Files.list(dir)) {
+			assertThat(files.filter(Files::isRegularFile).map(p -> p.getFileName().toString()))
+					.containsExactlyInAnyOrder(filename, stored.get(0).thumbnail(), stored.get(0).medium());
+		}
+	}
+
+	@Test
+	void retainOfKnownImageIncrementsExistingRow() {
+		ContentAddressedUploadStore store = new ContentAddressedUploadStore(
+				dir.toString(), null, repo, new SimpleMeterRegistry());
+		String hash = "ab".repeat(32);
+		ContentAddressedUploadStore.Stored stored =
+				new ContentAddressedUploadStore.Stored(hash, hash + ".png", 10, null, null, false);
+
+		store.retain(stored);
+		store.retain(stored);
+
+		assertThat(repo.findById(hash).orElseThrow().getRefCount()).isEqualTo(2);
+		assertThat(repo.findById(hash).orElseThrow().getFilename()).isEqualTo(hash + ".png");
+	}
+}
@@ -0,0 +1,92 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.redpandaapp.model.DiaryPost;
+import com.example.redpandaapp.repository.DiaryPostRepository;
+
+// ページごとのトランザクションで読むことを確かめるため、テスト自体はトランザクションで囲まない
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(DiaryExportService.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@TestPropertySource(properties = {
+		"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+		"app.export.page-size=3" })
+class DiaryExportServiceTest {
+
+	static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+	@Autowired
+	DiaryExportService exportService;
+
+	@Autowired
+	DiaryPostRepository repo;
+
+	@AfterEach
+	void cleanUp() {
+		repo.deleteAll();
+	}
+
+	@Test
+	void exportsEveryPostOldestFirstAcrossPages() throws Exception {
+		// 同じ時刻の投稿がページの境目をまたぐ（id 順に続ける）
+		List<Long> expected = new ArrayList<>();
+		expected.add(save("ふうた", 5).getId());
+		for (int i = 0; i < 5; i++) {
+			expected.add(save(i % 2 == 0 ? "みらい" : "ふうた", 10).getId());
+		}
+		expected.add(save("みらい", 20).getId());
+		expected.add(0, save("ふうた", 0).getId());
+
+		StringWriter out = new StringWriter();
+		long count = exportService.export(null, DiaryExportService.Format.CSV, out);
+
+		assertThat(count).isEqualTo(8);
+		List<String> lines = out.toString().lines().toList();
+		assertThat(lines).hasSize(9);
+		assertThat(lines.subList(1, lines.size())).extracting(l -> Long.valueOf(l.substring(0, l.indexOf(','))))
+				.containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	void exportsOnlyTheRequestedPanda() throws Exception {
+		for (int i = 0; i < 7; i++) {
+			save(i < 4 ? "ふうた" : "みらい", 10);
+		}
+
+		StringWriter out = new StringWriter();
+		long count = exportService.export("ふうた", DiaryExportService.Format.NDJSON, out);
+
+		assertThat(count).isEqualTo(4);
+		assertThat(out.toString().lines()).hasSize(4).allMatch(l -> l.contains("\"pandaName\":\"ふうた\""));
+
+		// ちょうどページの大きさで割り切れるときも、空ページで終わる
+		assertThat(exportService.export("みらい", DiaryExportService.Format.NDJSON, new StringWriter())).isEqualTo(3);
+		assertThat(exportService.export("ちっち", DiaryExportService.Format.NDJSON, new StringWriter())).isZero();
+	}
+
+	private DiaryPost save(String pandaName, int minutes) {
+		DiaryPost p = new DiaryPost();
+		p.setPandaName(pandaName);
+		p.setComment(pandaName + "の日記");
+		p.setCreatedAt(T0.plusMinutes(minutes));
+		return repo.save(p);
+	}
+}
@@ -0,0 +1,100 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.redpandaapp.model.DiaryPost;
+import com.example.redpandaapp.repository.DiaryPostRepository;
+
+// チャンクごとのコミットを確かめるため、テスト自体はトランザクションで囲まない
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ DiaryImportService.class, DiarySearchIndex.class, DiaryStatsService.class })
+@ImportAutoConfiguration({ JacksonAutoConfiguration.class, ValidationAutoConfiguration.class })
+@TestPropertySource(properties = {
+		"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+		"app.import.batch-size=3",
+		"app.import.chunk-size=4" })
+class DiaryImportServiceTest {
+
+	@Autowired
+	DiaryImportService importService;
+
+	@Autowired
+	DiaryPostRepository repo;
+
+	@Autowired
+	DiarySearchIndex searchIndex;
+
+	@AfterEach
+	void cleanUp() {
+		repo.deleteAll();
+	}
+
+	@Test
+	void importsValidCsvRowsInChunksAndReportsRejects() throws Exception {
+		String csv = "\uFEFFid,pandaName,comment,imageFilename,thumbnailFilename,mediumFilename,createdAt\r\n"
+				+ "1,ふうた,\"おひるね, ごろごろ\",,,,2024-05-01T10:00\r\n"
+				+ "2,みらい,\"笹を\"\"もぐもぐ\"\"\n2行目\",a.jpg,a_t.jpg,a_m.jpg,2024/05/02 11:30\r\n"
+				+ "3,ふうた,,,,,2024-05-03T09:00\r\n"
+				+ "4,ふうた,日付が変,,,,昨日\r\n"
+				+ "5,ふうた,列が足りない\r\n"
+				+ "6,みらい,c1,,,,\r\n"
+				+ "7,みらい,c2,,,,\r\n"
+				+ "8,みらい,c3,,,,\r\n"
+				+ "9,みらい,c4,,,,\r\n";
+
+		DiaryImportService.Report report = importService.importPosts(
+				new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), DiaryExportService.Format.CSV);
+
+		assertThat(report.read()).isEqualTo(9);
+		assertThat(report.imported()).isEqualTo(6);
+		assertThat(report.rejected()).isEqualTo(3);
+		assertThat(report.rejects()).extracting(DiaryImportService.Rejected::line).containsExactly(5L, 6L, 7L);
+		assertThat(report.rejects().get(0).reason()).isEqualTo("コメントは必須です。");
+		assertThat(repo.count()).isEqualTo(6);
+
+		DiaryPost quoted = repo.findAll().stream()
+				.filter(p -> "みらい".equals(p.getPandaName()) && p.getImageFilename() != null)
+				.findFirst().orElseThrow();
+		assertThat(quoted.getComment()).isEqualTo("笹を\"もぐもぐ\"\n2行目");
+		assertThat(quoted.getCreatedAt()).isEqualTo(LocalDateTime.of(2024, 5, 2, 11, 30));
+		assertThat(quoted.getThumbnailFilename()).isEqualTo("a_t.jpg");
+
+		// 取り込んだ投稿は検索できる
+		assertThat(searchIndex.search("ごろごろ", null, 10).postIds()).hasSize(1);
+	}
+
+	@Test
+	void importsNdjsonAndRejectsBrokenLines() throws Exception {
+		String ndjson = "{\"pandaName\":\"ふうた\",\"comment\":\"あさごはん\",\"createdAt\":\"2024-05-01T08:00:00\"}\n"
+				+ "\n"
+				+ "{\"pandaName\":\"ふうた\",\"comment\":\"" + "あ".repeat(1001) + "\"}\n"
+				+ "{broken\n"
+				+ "[1,2]\n"
+				+ "{\"pandaName\":\"みらい\",\"comment\":\"ゆうごはん\",\"imageFilename\":null}\n";
+
+		DiaryImportService.Report report = importService.importPosts(
+				new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), DiaryExportService.Format.NDJSON);
+
+		assertThat(report.imported()).isEqualTo(2);
+		assertThat(report.rejects()).extracting(DiaryImportService.Rejected::line).containsExactly(3L, 4L, 5L);
+		assertThat(report.rejects().get(0).reason()).isEqualTo("コメントは1000文字以内で入力してください。");
+		assertThat(repo.findAll()).extracting(DiaryPost::getComment).containsExactlyInAnyOrder("あさごはん", "ゆうごはん");
+	}
+}
@@ -0,0 +1,118 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.redpandaapp.model.DiaryPost;
+import com.example.redpandaapp.repository.DiaryPostRepository;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(DiarySearchIndex.class)
+@TestPropertySource(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class DiarySearchIndexTest {
+
+	static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+	@Autowired
+	DiarySearchIndex index;
+
+	@Autowired
+	DiaryPostRepository repo;
+
+	@AfterEach
+	void cleanUp() {
+		repo.deleteAll();
+	}
+
+	@Test
+	void findsSingleCharacterQueriesByScanningNewestFirst() {
+		DiaryPost a = save("ふうた", "笹をたべた", 0);
+		save("みらい", "おひるね", 1);
+		DiaryPost c = save("ちっち", "笹の葉", 2);
+		index.rebuild();
+
+		assertThat(index.search("笹", null, 10).postIds()).containsExactly(c.getId(), a.getId());
+
+		// 1件ずつ（続きがあるかと、カーソルより古いもの）
+		DiarySearchIndex.Hits first = index.search("笹", null, 1);
+		assertThat(first.postIds()).containsExactly(c.getId());
+		assertThat(first.hasNext()).isTrue();
+		DiarySearchIndex.Hits second = index.search("笹", c.getId(), 1);
+		assertThat(second.postIds()).containsExactly(a.getId());
+		assertThat(second.hasNext()).isFalse();
+
+		assertThat(index.search(" ", null, 10).postIds()).isEmpty();
+		assertThat(index.search("竹", null, 10).postIds()).isEmpty();
+	}
+
+	@Test
+	void matchesMixedKanaAndAsciiAcrossWidthAndCase() {
+		DiaryPost a = save("ふうた", "今日はRedPanda祭りでFuutaが大活躍", 0);
+		save("みらい", "redの服の人がいた", 1);
+		index.rebuild();
+
+		// 全角・大文字小文字・空白の違いは同一視する
+		assertThat(index.search("ｒｅｄｐａｎｄａ", null, 10).postIds()).containsExactly(a.getId());
+		assertThat(index.search("Red Panda祭", null, 10).postIds()).containsExactly(a.getId());
+		assertThat(index.search("fuutaが", null, 10).postIds()).containsExactly(a.getId());
+		// バイグラムはすべて含むが、続いては現れない
+		assertThat(index.search("祭り大", null, 10).postIds()).isEmpty();
+	}
+
+	@Test
+	void addsPostsAfterRebuildAsNewest() {
+		DiaryPost a = save("ふうた", "ごろごろ", 0);
+		index.rebuild();
+		assertThat(index.isReady()).isTrue();
+
+		DiaryPost b = save("ふうた", "またごろごろ", 1);
+		index.add(b);
+		// 同じ投稿を2回足しても1件
+		index.add(b);
+
+		assertThat(index.search("ごろごろ", null, 10).postIds()).containsExactly(b.getId(), a.getId());
+		assertThat(index.search("ごろごろ", b.getId(), 10).postIds()).containsExactly(a.getId());
+
+		// 作り直しても同じ結果
+		index.rebuild();
+		assertThat(index.search("ごろごろ", null, 10).postIds()).containsExactly(b.getId(), a.getId());
+	}
+
+	@Test
+	void nameQueriesReturnTheSameHitsAsTheLikeQuery() {
+		// コメントには問い合わせの文字列を含めない（LIKE は個体名だけを見る）
+		save("ふうた", "あ", 0);
+		save("ふうか", "い", 1);
+		save("Lily", "う", 2);
+		save("みらい", "え", 3);
+		save("ふうた", "お", 3);
+		save("ゆうた", "か", 4);
+		index.rebuild();
+
+		for (String q : List.of("ふう", "うた", "た", "LI", "lily", "みらい", "ぱんだ")) {
+			List<Long> like = repo.findLatestByPandaNameContaining(q, null, 100).getContent().stream()
+					.map(DiaryPost::getId).toList();
+			assertThat(index.search(q, null, 100).postIds()).as(q).containsExactlyElementsOf(like);
+		}
+	}
+
+	private DiaryPost save(String pandaName, String comment, int minutes) {
+		DiaryPost p = new DiaryPost();
+		p.setPandaName(pandaName);
+		p.setComment(comment);
+		p.setCreatedAt(T0.plusMinutes(minutes));
+		return repo.save(p);
+	}
+}
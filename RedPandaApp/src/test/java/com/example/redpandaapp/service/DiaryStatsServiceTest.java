@@ -0,0 +1,89 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.redpandaapp.model.DiaryPost;
+import com.example.redpandaapp.repository.DiaryPostRepository;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(DiaryStatsService.class)
+@TestPropertySource(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class DiaryStatsServiceTest {
+
+	@Autowired
+	DiaryStatsService stats;
+
+	@Autowired
+	DiaryPostRepository repo;
+
+	@AfterEach
+	void cleanUp() {
+		repo.deleteAll();
+	}
+
+	@Test
+	void latestPostIsChosenByCreatedAtNotId() {
+		DiaryPost recent = repo.save(post("ふうた", LocalDateTime.of(2024, 5, 10, 12, 0), "new_t.jpg"));
+		// 後から取り込んだ過去の投稿（id は大きいが古い）
+		repo.save(post("ふうた", LocalDateTime.of(2020, 1, 1, 9, 0), "old_t.jpg"));
+
+		stats.rebuild();
+
+		DiaryStatsService.Stats s = stats.get("ふうた");
+		assertThat(s.postCount()).isEqualTo(2);
+		assertThat(s.latestPostId()).isEqualTo(recent.getId());
+		assertThat(s.latestPhoto()).isEqualTo("new_t.jpg");
+
+		// record も createdAt で比べる
+		DiaryPost older = repo.save(post("ふうた", LocalDateTime.of(2019, 3, 3, 3, 0), "older_t.jpg"));
+		stats.record(older);
+		assertThat(stats.get("ふうた").postCount()).isEqualTo(3);
+		assertThat(stats.get("ふうた").latestPhoto()).isEqualTo("new_t.jpg");
+
+		DiaryPost newest = repo.save(post("ふうた", LocalDateTime.of(2024, 5, 10, 12, 0), "same_time_t.jpg"));
+		stats.record(newest);
+		assertThat(stats.get("ふうた").latestPostId()).isEqualTo(newest.getId());
+	}
+
+	@Test
+	void recordOfPostAlreadyCountedByRebuildIsIgnored() {
+		// 保存は rebuild より前、record は rebuild の後になった投稿
+		DiaryPost saved = repo.save(post("みらい", LocalDateTime.now(), "a_t.jpg"));
+		repo.save(post("みらい", LocalDateTime.now().minusDays(30), "b_t.jpg"));
+
+		stats.rebuild();
+		stats.record(saved);
+
+		assertThat(stats.get("みらい").postCount()).isEqualTo(2);
+		assertThat(stats.get("みらい").latestPostId()).isEqualTo(saved.getId());
+
+		DiaryPost next = repo.save(post("みらい", LocalDateTime.now(), "c_t.jpg"));
+		long version = stats.version();
+		stats.record(next);
+
+		assertThat(stats.get("みらい").postCount()).isEqualTo(3);
+		assertThat(stats.get("みらい").latestPhoto()).isEqualTo("c_t.jpg");
+		assertThat(stats.version()).isGreaterThan(version);
+	}
+
+	private static DiaryPost post(String pandaName, LocalDateTime createdAt, String thumbnail) {
+		DiaryPost p = new DiaryPost();
+		p.setPandaName(pandaName);
+		p.setComment("c");
+		p.setThumbnailFilename(thumbnail);
+		p.setCreatedAt(createdAt);
+		return p;
+	}
+}
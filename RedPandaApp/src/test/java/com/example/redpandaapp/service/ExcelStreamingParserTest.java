@@ -0,0 +1,101 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import com.example.redpandaapp.model.RedPanda;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// ストリーミング（SAX）読込が従来の DOM 読込と同じ結果になることを確かめる
+class ExcelStreamingParserTest {
+
+	final ExcelImportService excel = new ExcelImportService(new SimpleMeterRegistry());
+
+	@Test
+	void matchesDomParserOnBackupWorkbook() throws Exception {
+		byte[] workbook;
+		try (InputStream in = getClass().getResourceAsStream("/redpandas_backup.xlsx")) {
+			workbook = in.readAllBytes();
+		}
+
+		List<RedPanda> dom = excel.parseExcelDom(new ByteArrayInputStream(workbook));
+		List<RedPanda> sax = new ExcelStreamingParser().parse(new ByteArrayInputStream(workbook));
+
+		assertThat(sax).isNotEmpty();
+		assertThat(sax).isEqualTo(dom);
+
+		// 見出し2行と最終行は読まない
+		try (Workbook wb = new XSSFWorkbook(new ByteArrayInputStream(workbook))) {
+			Sheet sheet = wb.getSheetAt(0);
+			int dataRows = 0;
+			for (int i = 2; i <= sheet.getLastRowNum() - 1; i++) {
+				if (sheet.getRow(i) != null) dataRows++;
+			}
+			assertThat(sax).hasSize(dataRows);
+		}
+
+		// 日付列はシリアル値のまま残さず yyyy/MM/dd にする（「2012/1～4まで多摩」のような文字列はそのまま）
+		// 年齢は生年月日から計算する
+		for (RedPanda p : sax) {
+			for (String date : List.of(p.getBirthDate(), p.getDeathDate(), p.getMovedOutDate(), p.getArrivalDate())) {
+				assertThat(date).doesNotMatch("\\d+(\\.\\d+)?");
+			}
+			assertThat(p.getAge()).isEqualTo(ExcelImportService.calculateAge(p.getBirthDate(), p.getDeathDate()));
+		}
+		assertThat(sax).allSatisfy(p -> assertThat(p.getBirthDate()).matches("(\\d{4}/\\d{2}/\\d{2})?"));
+		assertThat(sax).anySatisfy(p -> assertThat(p.getAge()).endsWith("歳"));
+	}
+
+	@Test
+	void matchesDomParserOnEdgeCaseCells() throws Exception {
+		byte[] workbook;
+		try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+			Sheet sheet = wb.createSheet();
+			sheet.createRow(0).createCell(0).setCellValue("一覧");
+			sheet.createRow(1).createCell(0).setCellValue("名前");
+
+			Row a = sheet.createRow(2);
+			a.createCell(0).setCellValue("フウタ");
+			a.createCell(1).setCellValue("オス");
+			a.createCell(2).setCellValue(DateUtil.getExcelDate(LocalDate.of(2020, 7, 1)));
+			a.createCell(3).setCellValue(0);                  // 0 の日付は空
+			a.createCell(4).setCellValue("99歳");             // 年齢列は読まない
+			a.createCell(5).setCellValue("2023/01/02");        // 文字列の日付はそのまま
+			a.createCell(9).setCellFormula("\"ゲン\"&\"キ\"");  // 数式（計算結果）
+			a.createCell(10).setCellFormula("1+2");
+
+			// 途中の空行と、読み捨てる最終行
+			Row c = sheet.createRow(4);
+			c.createCell(0).setCellValue("ミライ");
+			sheet.createRow(5).createCell(0).setCellValue("合計");
+
+			wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+			wb.write(out);
+			workbook = out.toByteArray();
+		}
+
+		List<RedPanda> dom = excel.parseExcelDom(new ByteArrayInputStream(workbook));
+		List<RedPanda> sax = new ExcelStreamingParser().parse(new ByteArrayInputStream(workbook));
+
+		assertThat(sax).isEqualTo(dom);
+		assertThat(sax).extracting(RedPanda::getName).containsExactly("フウタ", "ミライ");
+		RedPanda fuuta = sax.get(0);
+		assertThat(fuuta.getBirthDate()).isEqualTo("2020/07/01");
+		assertThat(fuuta.getDeathDate()).isEmpty();
+		assertThat(fuuta.getAge()).isEqualTo(ExcelImportService.calculateAge("2020/07/01", ""));
+		assertThat(fuuta.getMovedOutDate()).isEqualTo("2023/01/02");
+	}
+}
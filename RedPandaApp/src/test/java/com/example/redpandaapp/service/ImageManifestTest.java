@@ -0,0 +1,63 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageManifestTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void indexesByNormalizedNameAndOrdinal() throws Exception {
+		touch("ふうた2.jpg", "ふうた.png", "ふうた.jpg", "Ｆｕｕ Ｔａ1.jpeg", "memo.txt", "ふうた21.jpg");
+
+		ImageManifest manifest = new ImageManifest(new LocalDirectoryAssetLister(dir.toString()));
+
+		assertThat(manifest.isReady()).isTrue();
+		assertThat(manifest.imageUrls("ふうた")).containsExactly(
+				"/assets/pandas/ふうた.jpg",
+				"/assets/pandas/ふうた.png",
+				"/assets/pandas/ふうた2.jpg");
+		assertThat(manifest.imageUrls("fuu ta")).containsExactly("/assets/pandas/Ｆｕｕ Ｔａ1.jpeg");
+		// 数字で終わる名前は連番0としても引ける
+		assertThat(manifest.imageUrls("ふうた2")).containsExactly("/assets/pandas/ふうた2.jpg");
+		assertThat(manifest.imageUrls("いない")).isEmpty();
+	}
+
+	@Test
+	void refreshAppliesAddedAndRemovedFiles() throws Exception {
+		touch("ふうた.jpg", "ふうた1.jpg");
+		ImageManifest manifest = new ImageManifest(new LocalDirectoryAssetLister(dir.toString()));
+		assertThat(manifest.imageUrls("ふうた")).hasSize(2);
+
+		Files.delete(dir.resolve("ふうた.jpg"));
+		touch("ふうた3.png", "みらい.jpg");
+		manifest.refresh();
+
+		assertThat(manifest.imageUrls("ふうた")).containsExactly(
+				"/assets/pandas/ふうた1.jpg",
+				"/assets/pandas/ふうた3.png");
+		assertThat(manifest.imageUrls("みらい")).containsExactly("/assets/pandas/みらい.jpg");
+	}
+
+	@Test
+	void notReadyWhenListingFails() {
+		ImageManifest manifest = new ImageManifest(
+				new LocalDirectoryAssetLister(dir.resolve("missing").toString()));
+
+		assertThat(manifest.isReady()).isFalse();
+		assertThat(manifest.imageUrls("ふうた")).isEmpty();
+	}
+
+	private void touch(String... names) throws Exception {
+		for (String n : names) {
+			Files.writeString(dir.resolve(n), n);
+		}
+	}
+}
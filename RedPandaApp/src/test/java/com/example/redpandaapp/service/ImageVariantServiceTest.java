@@ -0,0 +1,69 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ImageVariantServiceTest {
+
+	final ImageVariantService service = new ImageVariantService();
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void writesMediumAndThumbnailForDecodableImage() throws Exception {
+		Path original = dir.resolve("a.png");
+		ImageIO.write(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_ARGB), "png", original.toFile());
+
+		ImageVariantService.Variants v = service.createVariants(original, "a");
+
+		assertThat(v.medium()).isEqualTo("a_m.jpg");
+		assertThat(v.thumbnail()).isEqualTo("a_t.jpg");
+		BufferedImage thumb = ImageIO.read(dir.resolve("a_t.jpg").toFile());
+		assertThat(thumb.getWidth()).isEqualTo(320);
+		assertThat(thumb.getHeight()).isEqualTo(160);
+	}
+
+	@Test
+	void keepsOnlyOriginalWhenJpegIsCorrupt() throws Exception {
+		// SOI・APP0 の後が壊れている JPEG
+		Path original = dir.resolve("b.jpg");
+		byte[] bytes = new byte[512];
+		byte[] head = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00, 0x10, 'J', 'F', 'I', 'F', 0x00 };
+		System.arraycopy(head, 0, bytes, 0, head.length);
+		for (int i = head.length; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 31);
+		}
+		Files.write(original, bytes);
+
+		assertThat(service.createVariants(original, "b")).isEqualTo(ImageVariantService.Variants.NONE);
+		assertThat(dir.resolve("b_m.jpg")).doesNotExist();
+	}
+
+	@Test
+	void skipsDecodingImagesAboveThePixelLimit() throws Exception {
+		ReflectionTestUtils.setField(service, "maxPixels", 100L * 100);
+		Path original = dir.resolve("c.png");
+		ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB), "png", original.toFile());
+
+		assertThat(service.createVariants(original, "c")).isEqualTo(ImageVariantService.Variants.NONE);
+		assertThat(dir.resolve("c_t.jpg")).doesNotExist();
+	}
+
+	@Test
+	void keepsOnlyOriginalForUnknownFormat() throws Exception {
+		Path original = dir.resolve("d.heic");
+		Files.writeString(original, "not an image");
+
+		assertThat(service.createVariants(original, "d")).isEqualTo(ImageVariantService.Variants.NONE);
+	}
+}
@@ -0,0 +1,216 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// バケットの代わりにローカルの HTTP サーバーを立てる
+class PandaAssetProxyTest {
+
+	@TempDir
+	Path dir;
+
+	HttpServer bucket;
+	String base;
+
+	// パス → 本文（ETag は本文から作る）
+	final Map<String, String> objects = new ConcurrentHashMap<>();
+	final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+	final List<String> ifNoneMatch = new ArrayList<>();
+	volatile int failWith;
+	volatile CountDownLatch gate;
+
+	@BeforeEach
+	void startBucket() throws IOException {
+		bucket = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		bucket.setExecutor(Executors.newCachedThreadPool());
+		bucket.createContext("/", this::handle);
+		bucket.start();
+		base = "http://127.0.0.1:" + bucket.getAddress().getPort();
+	}
+
+	@AfterEach
+	void stopBucket() {
+		bucket.stop(0);
+	}
+
+	@Test
+	void servesFromDiskAndRevalidatesWithEtag() throws Exception {
+		objects.put("/fuuta.jpg", "fuuta-v1");
+		PandaAssetProxy fresh = proxy(1024, Duration.ofHours(1));
+
+		PandaAssetProxy.Asset a = fresh.get(base + "/fuuta.jpg");
+		PandaAssetProxy.Asset b = fresh.get(base + "/fuuta.jpg");
+		assertThat(Files.readString(a.file())).isEqualTo("fuuta-v1");
+		assertThat(a.etag()).isEqualTo("\"fuuta-v1\"");
+		assertThat(b.file()).isEqualTo(a.file());
+		assertThat(count("/fuuta.jpg")).isEqualTo(1);
+
+		// 期限切れなら条件付きGET。変わっていなければ同じファイルを使い続ける
+		PandaAssetProxy expiring = proxy(1024, Duration.ZERO);
+		PandaAssetProxy.Asset c = expiring.get(base + "/fuuta.jpg");
+		PandaAssetProxy.Asset d = expiring.get(base + "/fuuta.jpg");
+		assertThat(d.file()).isEqualTo(c.file());
+		assertThat(ifNoneMatch).containsExactly("\"fuuta-v1\"");
+
+		// 変わっていれば取り直す
+		objects.put("/fuuta.jpg", "fuuta-v2");
+		PandaAssetProxy.Asset e = expiring.get(base + "/fuuta.jpg");
+		assertThat(Files.readString(e.file())).isEqualTo("fuuta-v2");
+		assertThat(Files.exists(c.file())).isFalse();
+	}
+
+	@Test
+	void coalescesConcurrentMisses() throws Exception {
+		objects.put("/mirai.jpg", "mirai");
+		PandaAssetProxy proxy = proxy(1024, Duration.ofHours(1));
+		gate = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<PandaAssetProxy.Asset>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(pool.submit(() -> proxy.get(base + "/mirai.jpg")));
+			}
+			// 全員が待ちに入るまで上流の応答を止めておく
+			Thread.sleep(300);
+			gate.countDown();
+
+			for (Future<PandaAssetProxy.Asset> f : results) {
+				assertThat(Files.readString(f.get(5, TimeUnit.SECONDS).file())).isEqualTo("mirai");
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		assertThat(count("/mirai.jpg")).isEqualTo(1);
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedBeyondMaxBytes() throws Exception {
+		objects.put("/a.jpg", "aaaa");
+		objects.put("/b.jpg", "bbbb");
+		objects.put("/c.jpg", "cccc");
+		PandaAssetProxy proxy = proxy(10, Duration.ofHours(1));
+
+		PandaAssetProxy.Asset a = proxy.get(base + "/a.jpg");
+		PandaAssetProxy.Asset b = proxy.get(base + "/b.jpg");
+		proxy.get(base + "/a.jpg");
+		proxy.get(base + "/c.jpg");
+
+		// 合計 12 バイト > 10 なので、最も長く使われていない b を削除
+		assertThat(Files.exists(b.file())).isFalse();
+		assertThat(Files.exists(a.file())).isTrue();
+		proxy.get(base + "/b.jpg");
+		assertThat(count("/a.jpg")).isEqualTo(1);
+		assertThat(count("/b.jpg")).isEqualTo(2);
+	}
+
+	@Test
+	void keepsServingStaleCopyWhileUpstreamFails() throws Exception {
+		objects.put("/fuuta.jpg", "fuuta");
+		PandaAssetProxy proxy = proxy(1024, Duration.ZERO);
+		PandaAssetProxy.Asset a = proxy.get(base + "/fuuta.jpg");
+
+		failWith = 503;
+		assertThat(proxy.get(base + "/fuuta.jpg").file()).isEqualTo(a.file());
+		assertThatThrownBy(() -> proxy.get(base + "/mirai.jpg")).isInstanceOf(IOException.class);
+
+		failWith = 0;
+		assertThat(proxy.get(base + "/missing.jpg")).isNull();
+	}
+
+	@Test
+	void stopsAskingUpstreamDuringBackoffAfterFailure() throws Exception {
+		objects.put("/fuuta.jpg", "fuuta");
+		PandaAssetProxy proxy = proxy(1024, Duration.ZERO, Duration.ofHours(1));
+		PandaAssetProxy.Asset a = proxy.get(base + "/fuuta.jpg");
+
+		failWith = 503;
+		assertThat(proxy.get(base + "/fuuta.jpg").file()).isEqualTo(a.file());
+		assertThat(count("/fuuta.jpg")).isEqualTo(2);
+
+		// backoff の間は上流に問い合わせず、古いものか失敗をすぐ返す
+		assertThat(proxy.get(base + "/fuuta.jpg").file()).isEqualTo(a.file());
+		assertThatThrownBy(() -> proxy.get(base + "/mirai.jpg")).isInstanceOf(IOException.class);
+		assertThat(count("/fuuta.jpg")).isEqualTo(2);
+		assertThat(count("/mirai.jpg")).isZero();
+	}
+
+	private PandaAssetProxy proxy(long maxBytes, Duration revalidate) throws IOException {
+		return proxy(maxBytes, revalidate, Duration.ZERO);
+	}
+
+	private PandaAssetProxy proxy(long maxBytes, Duration revalidate, Duration backoff) throws IOException {
+		return new PandaAssetProxy(Files.createTempDirectory(dir, "cache").toString(), maxBytes, revalidate,
+				Duration.ofSeconds(5), backoff);
+	}
+
+	private int count(String path) {
+		AtomicInteger n = requests.get(path);
+		return n == null ? 0 : n.get();
+	}
+
+	private void handle(HttpExchange ex) throws IOException {
+		try (ex) {
+			String path = ex.getRequestURI().getPath();
+			requests.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+			CountDownLatch g = gate;
+			if (g != null) g.await(5, TimeUnit.SECONDS);
+
+			if (failWith != 0) {
+				ex.sendResponseHeaders(failWith, -1);
+				return;
+			}
+			String body = objects.get(path);
+			if (body == null) {
+				ex.sendResponseHeaders(404, -1);
+				return;
+			}
+			String etag = "\"" + body + "\"";
+			String inm = ex.getRequestHeaders().getFirst("If-None-Match");
+			if (inm != null) {
+				synchronized (ifNoneMatch) {
+					ifNoneMatch.add(inm);
+				}
+			}
+			ex.getResponseHeaders().set("ETag", etag);
+			if (etag.equals(inm)) {
+				ex.sendResponseHeaders(304, -1);
+				return;
+			}
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			ex.getResponseHeaders().set("Content-Type", "image/jpeg");
+			ex.sendResponseHeaders(200, bytes.length);
+			try (OutputStream out = ex.getResponseBody()) {
+				out.write(bytes);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
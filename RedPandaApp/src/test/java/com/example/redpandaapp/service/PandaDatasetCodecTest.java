@@ -0,0 +1,98 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.redpandaapp.model.RedPanda;
+
+class PandaDatasetCodecTest {
+
+	@Test
+	void roundTripsBackupWorkbookWithSharedDictionary() throws Exception {
+		List<RedPanda> pandas;
+		try (InputStream in = getClass().getResourceAsStream("/redpandas_backup.xlsx")) {
+			pandas = new ExcelStreamingParser().parse(in);
+		}
+		byte[] encoded = encode(pandas);
+
+		assertThat(PandaDatasetCodec.read(new ByteArrayInputStream(encoded))).isEqualTo(pandas);
+
+		// 辞書は値ごとに1件（園名・性別など繰り返しの多い値を共有する）
+		Set<String> distinct = new HashSet<>();
+		int cells = 0;
+		for (RedPanda p : pandas) {
+			for (String v : List.of(p.getName(), p.getGender(), p.getBirthDate(), p.getDeathDate(),
+					p.getMovedOutDate(), p.getMovedOutZoo(), p.getArrivalDate(), p.getOriginZoo(), p.getFather(),
+					p.getMother(), p.getPair1(), p.getPair2(), p.getPair3(), p.getPersonality(), p.getFeature())) {
+				distinct.add(v);
+				cells++;
+			}
+		}
+		DataInputStream header = new DataInputStream(new ByteArrayInputStream(encoded));
+		assertThat(header.readInt()).isEqualTo(0x52504453);
+		assertThat(header.readInt()).isEqualTo(1);
+		assertThat(header.readInt()).isEqualTo(pandas.size());
+		assertThat(header.readInt()).isEqualTo(distinct.size()).isLessThan(cells);
+	}
+
+	@Test
+	void compiledResourceMatchesWorkbook() throws Exception {
+		List<RedPanda> fromWorkbook;
+		try (InputStream in = getClass().getResourceAsStream("/redpandas_backup.xlsx")) {
+			fromWorkbook = new ExcelStreamingParser().parse(in);
+		}
+		try (InputStream compiled = getClass().getResourceAsStream(PandaDatasetCodec.RESOURCE)) {
+			assertThat(compiled).isNotNull();
+			assertThat(PandaDatasetCodec.read(compiled)).isEqualTo(fromWorkbook);
+		}
+	}
+
+	@Test
+	void keepsNullAndEmptyFieldsApart() throws Exception {
+		RedPanda blank = new RedPanda();
+		blank.setName("");
+		blank.setGender(null);
+		blank.setBirthDate("");
+		blank.setFeature(null);
+		blank.setAge(ExcelImportService.calculateAge("", null));
+
+		RedPanda full = new RedPanda();
+		full.setName("フウタ");
+		full.setGender("オス");
+		full.setBirthDate("2020/07/01");
+		full.setFeature("しっぽが長い\n2行目");
+		full.setAge(ExcelImportService.calculateAge("2020/07/01", null));
+
+		List<RedPanda> decoded = PandaDatasetCodec.read(new ByteArrayInputStream(encode(List.of(blank, full))));
+
+		assertThat(decoded).containsExactly(blank, full);
+		assertThat(decoded.get(0).getName()).isEmpty();
+		assertThat(decoded.get(0).getGender()).isNull();
+		assertThat(decoded.get(0).getFeature()).isNull();
+		assertThat(PandaDatasetCodec.read(new ByteArrayInputStream(encode(List.of())))).isEmpty();
+	}
+
+	@Test
+	void rejectsUnknownFormat() {
+		byte[] junk = { 'P', 'K', 3, 4, 0, 0, 0, 0 };
+		assertThatThrownBy(() -> PandaDatasetCodec.read(new ByteArrayInputStream(junk)))
+				.isInstanceOf(IOException.class);
+	}
+
+	private static byte[] encode(List<RedPanda> pandas) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PandaDatasetCodec.write(pandas, out);
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,86 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.redpandaapp.model.RedPanda;
+
+class PandaNameSuggesterTest {
+
+	final PandaNameSuggester suggester = new PandaNameSuggester(List.of(
+			panda("フウカ", "2018-06-01", null),
+			panda("フウタ", "2020-07-01", null),
+			panda("リリー・ローズ", "2019-05-01", null),
+			panda("ミライ", "2015-06-01", "2022-01-01")));
+
+	@Test
+	void completesPrefixAcrossKanaWidthAndRomaji() {
+		// 在園 → 生年月日降順
+		assertThat(names(suggester.suggest("ふう", false, 10).matches())).containsExactly("フウタ", "フウカ");
+		assertThat(names(suggester.suggest("ﾌｳ", false, 10).matches())).containsExactly("フウタ", "フウカ");
+		assertThat(names(suggester.suggest(" FUUT ", false, 10).matches())).containsExactly("フウタ");
+		// 区切りを省いた読みでも引ける
+		assertThat(names(suggester.suggest("りりーろ", false, 10).matches())).containsExactly("リリー・ローズ");
+		assertThat(names(suggester.suggest("ririro", false, 10).matches())).containsExactly("リリー・ローズ");
+		assertThat(suggester.suggest("", false, 10).matches()).isEmpty();
+	}
+
+	@Test
+	void postableScopeLeavesOutPandasNoLongerInPark() {
+		assertThat(names(suggester.suggest("み", false, 10).matches())).containsExactly("ミライ");
+		PandaNameSuggester.Result inPark = suggester.suggest("みら", true, 10);
+		assertThat(inPark.matches()).isEmpty();
+		assertThat(inPark.similar()).isEmpty();
+	}
+
+	@Test
+	void fillsWithEditDistanceOneWhenPrefixFallsShort() {
+		// 挿入（う が抜けている・末尾の置換でフウカも）・置換（ら → る）・削除（余分な ん）
+		assertThat(names(suggester.suggest("ふた", false, 10).similar())).containsExactly("フウタ", "フウカ");
+		assertThat(names(suggester.suggest("みるい", false, 10).similar())).containsExactly("ミライ");
+		assertThat(names(suggester.suggest("みんら", false, 10).similar())).containsExactly("ミライ");
+
+		// 前方一致したものは similar に重ねない
+		PandaNameSuggester.Result r = suggester.suggest("ふうか", false, 10);
+		assertThat(names(r.matches())).containsExactly("フウカ");
+		assertThat(names(r.similar())).containsExactly("フウタ");
+	}
+
+	@Test
+	void returnsTopRankedWithinLimit() {
+		List<RedPanda> many = new ArrayList<>();
+		for (int i = 10; i < 30; i++) {
+			many.add(panda("パンダ" + i, "20" + i + "-01-01", null));
+		}
+		PandaNameSuggester s = new PandaNameSuggester(many);
+
+		assertThat(s.suggest("ぱんだ", false, 50).matches()).hasSize(PandaNameSuggester.MAX_SUGGESTIONS);
+		assertThat(names(s.suggest("ぱんだ", false, 3).matches())).containsExactly("パンダ29", "パンダ28", "パンダ27");
+		assertThat(names(s.suggest("ぱんだ1", false, 3).matches())).containsExactly("パンダ19", "パンダ18", "パンダ17");
+	}
+
+	@Test
+	void readsKanaAsHepburn() {
+		assertThat(PandaNameSuggester.romaji("しゃおしゃお")).isEqualTo("shaoshao");
+		assertThat(PandaNameSuggester.romaji("ちっち")).isEqualTo("chitchi");
+		assertThat(PandaNameSuggester.romaji("ひゃくじゅう")).isEqualTo("hyakujuu");
+		assertThat(PandaNameSuggester.romaji("ふぁん")).isEqualTo("fan");
+		assertThat(PandaNameSuggester.romaji("げんき丸")).isNull();
+	}
+
+	private static List<String> names(List<PandaNameSuggester.Suggestion> list) {
+		return list.stream().map(PandaNameSuggester.Suggestion::name).toList();
+	}
+
+	private static RedPanda panda(String name, String birthDate, String movedOutDate) {
+		RedPanda p = new RedPanda();
+		p.setName(name);
+		p.setBirthDate(birthDate);
+		p.setMovedOutDate(movedOutDate);
+		return p;
+	}
+}
@@ -0,0 +1,116 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.redpandaapp.model.RedPanda;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RedPandaRegistryTest {
+
+	@Test
+	void mergesSourcesByNormalizedNameInSourceOrder() {
+		RedPanda fuutaA = panda("フウタ", "西山動物園");
+		RedPanda mirai = panda("ミライ", "円山動物園");
+		RedPanda fuutaB = panda("ﾌｳﾀ", "西山動物園");
+		RedPanda fuutaOther = panda("フウタ", "王子動物園");
+		RedPanda unnamed = panda(null, null);
+
+		List<RedPanda> merged = RedPandaRegistry.merge(List.of(
+				List.of(fuutaA, mirai, unnamed),
+				List.of(fuutaB, fuutaOther, unnamed)));
+
+		// 同じ名前は来園元が違っても先の取得元を残す（個体は名前で引くため）。名前の無い行は間引かない
+		assertThat(merged).containsExactly(fuutaA, mirai, unnamed, unnamed);
+	}
+
+	@Test
+	void parsesSourceListAndFallsBackToSingleExcelUrl() {
+		assertThat(RedPandaRegistry.parseSources(
+				" nishiyama=https://a.example/x.xlsx , https://b.example/y.xlsx?dl=1 ,", "https://old.example/z.xlsx"))
+				.containsExactly(
+						new RedPandaRegistry.Source("nishiyama", "https://a.example/x.xlsx"),
+						new RedPandaRegistry.Source("source2", "https://b.example/y.xlsx?dl=1"));
+		assertThat(RedPandaRegistry.parseSources("", "https://old.example/z.xlsx"))
+				.containsExactly(new RedPandaRegistry.Source("default", "https://old.example/z.xlsx"));
+	}
+
+	@Test
+	void failingSourceDoesNotTripBreakerOfHealthySourceOnSameHost() throws Exception {
+		byte[] workbook;
+		try (InputStream in = getClass().getResourceAsStream("/redpandas_backup.xlsx")) {
+			workbook = in.readAllBytes();
+		}
+		AtomicInteger goodRequests = new AtomicInteger();
+		AtomicInteger badRequests = new AtomicInteger();
+
+		// 同じホストに、常に 503 を返す取得元と正常な取得元を置く
+		HttpServer origin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		origin.setExecutor(Executors.newCachedThreadPool());
+		origin.createContext("/good.xlsx", ex -> {
+			goodRequests.incrementAndGet();
+			respond(ex, 200, workbook);
+		});
+		origin.createContext("/bad.xlsx", ex -> {
+			badRequests.incrementAndGet();
+			respond(ex, 503, new byte[0]);
+		});
+		origin.start();
+		String base = "http://127.0.0.1:" + origin.getAddress().getPort();
+
+		// 1回の失敗で 1分間ブレーカーが開く
+		RemoteFetcher fetcher = new RemoteFetcher(new SimpleMeterRegistry(), Duration.ofSeconds(1), 100, 1, Duration.ofMinutes(1));
+		RedPandaRegistry registry = new RedPandaRegistry(new ExcelImportService(new SimpleMeterRegistry()), fetcher,
+				new SimpleMeterRegistry(), "good=" + base + "/good.xlsx,bad=" + base + "/bad.xlsx", "",
+				Duration.ofSeconds(5), 4);
+		try {
+			for (int i = 0; i < 3; i++) {
+				registry.refresh();
+
+				RedPandaRegistry.SourceStatus good = registry.sourceStatuses().get(0);
+				RedPandaRegistry.SourceStatus bad = registry.sourceStatuses().get(1);
+				assertThat(good.state()).isEqualTo("ok");
+				assertThat(good.lastError()).isNull();
+				assertThat(bad.state()).isEqualTo("failed");
+			}
+
+			// 正常な取得元は毎回問い合わせ、壊れた取得元は最初の失敗のあとは止めている
+			assertThat(goodRequests.get()).isEqualTo(3);
+			assertThat(badRequests.get()).isEqualTo(1);
+			assertThat(registry.current().fromBackup()).isFalse();
+			assertThat(registry.current().pandas()).hasSize(registry.sourceStatuses().get(0).pandas()).isNotEmpty();
+		} finally {
+			registry.destroy();
+			fetcher.destroy();
+			origin.stop(0);
+		}
+	}
+
+	private static void respond(HttpExchange ex, int status, byte[] body) throws IOException {
+		ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		try (OutputStream out = ex.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static RedPanda panda(String name, String originZoo) {
+		RedPanda p = new RedPanda();
+		p.setName(name);
+		p.setOriginZoo(originZoo);
+		return p;
+	}
+}
@@ -0,0 +1,199 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// 遅くしたり失敗させたりできるローカルの HTTP サーバーを相手にする
+class RemoteFetcherTest {
+
+	static final Duration TIMEOUT = Duration.ofMillis(500);
+
+	HttpServer origin;
+	String url;
+	RemoteFetcher fetcher;
+
+	volatile String body = "v1";
+	volatile int failWith;
+	volatile long delayMillis;
+	volatile CountDownLatch gate;
+	final AtomicInteger requests = new AtomicInteger();
+	final AtomicInteger conditional = new AtomicInteger();
+
+	@BeforeEach
+	void start() throws IOException {
+		origin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		origin.setExecutor(Executors.newCachedThreadPool());
+		origin.createContext("/", this::handle);
+		origin.start();
+		url = "http://127.0.0.1:" + origin.getAddress().getPort() + "/data.xlsx";
+		// 2回続けて失敗したら 300ms 問い合わせを止める
+		fetcher = new RemoteFetcher(new SimpleMeterRegistry(), Duration.ofSeconds(1), 100, 2, Duration.ofMillis(300));
+	}
+
+	@AfterEach
+	void stop() {
+		fetcher.destroy();
+		origin.stop(0);
+	}
+
+	@Test
+	void givesUpOnSlowOriginAtTheDeadline() {
+		delayMillis = 3000;
+		long started = System.nanoTime();
+
+		assertThatThrownBy(() -> fetcher.get(url, policy(Duration.ZERO, Duration.ZERO)))
+				.isInstanceOf(IOException.class);
+		assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(2000));
+	}
+
+	@Test
+	void revalidatesWithEtagAndKeepsGenerationOnNotModified() throws Exception {
+		RemoteFetcher.Response first = fetcher.get(url, policy(Duration.ZERO, Duration.ZERO));
+		RemoteFetcher.Response second = fetcher.get(url, policy(Duration.ZERO, Duration.ZERO));
+
+		assertThat(text(first)).isEqualTo("v1");
+		assertThat(second.generation()).isEqualTo(first.generation());
+		assertThat(conditional.get()).isEqualTo(1);
+
+		body = "v2";
+		RemoteFetcher.Response third = fetcher.get(url, policy(Duration.ZERO, Duration.ZERO));
+		assertThat(text(third)).isEqualTo("v2");
+		assertThat(third.generation()).isGreaterThan(first.generation());
+	}
+
+	@Test
+	void servesStaleWhileRevalidatingInBackground() throws Exception {
+		RemoteFetcher.Policy swr = policy(Duration.ZERO, Duration.ofMinutes(5));
+		fetcher.get(url, swr);
+
+		body = "v2";
+		delayMillis = 200;
+		long started = System.nanoTime();
+		RemoteFetcher.Response stale = fetcher.get(url, swr);
+		// 上流を待たずに手元の結果が返る
+		assertThat(text(stale)).isEqualTo("v1");
+		assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(150));
+
+		// 裏での取り直しが終われば新しい結果になる
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+		String latest = "v1";
+		while (!latest.equals("v2") && System.nanoTime() < deadline) {
+			Thread.sleep(50);
+			latest = text(fetcher.get(url, policy(Duration.ofMinutes(5), Duration.ZERO)));
+		}
+		assertThat(latest).isEqualTo("v2");
+	}
+
+	@Test
+	void coalescesConcurrentRequestsIntoOneUpstreamFetch() throws Exception {
+		gate = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<RemoteFetcher.Response>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(pool.submit(() -> fetcher.get(url, policy(Duration.ofMinutes(5), Duration.ZERO))));
+			}
+			Thread.sleep(200);
+			gate.countDown();
+
+			for (Future<RemoteFetcher.Response> f : results) {
+				assertThat(text(f.get(5, TimeUnit.SECONDS))).isEqualTo("v1");
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		assertThat(requests.get()).isEqualTo(1);
+	}
+
+	@Test
+	void opensCircuitAndFallsBackToLastGoodResult() throws Exception {
+		RemoteFetcher.Response good = fetcher.get(url, policy(Duration.ZERO, Duration.ZERO));
+
+		failWith = 503;
+		// 失敗しても最後に取れた結果を返す。2回で回路が開く
+		assertThat(fetcher.get(url, policy(Duration.ZERO, Duration.ZERO)).generation()).isEqualTo(good.generation());
+		RemoteFetcher.Response last = fetcher.get(url, policy(Duration.ZERO, Duration.ZERO));
+		assertThat(last.generation()).isEqualTo(good.generation());
+		assertThat(last.fallback()).isTrue();
+		assertThat(good.fallback()).isFalse();
+		int before = requests.get();
+
+		// 開いている間は上流に問い合わせない
+		assertThat(text(fetcher.get(url, policy(Duration.ZERO, Duration.ZERO)))).isEqualTo("v1");
+		assertThatThrownBy(() -> fetcher.head(url, policy(Duration.ZERO, Duration.ZERO)))
+				.isInstanceOf(RemoteFetcher.CircuitOpenException.class);
+		assertThat(requests.get()).isEqualTo(before);
+
+		// cooldown の後の1件で回復を確かめて閉じる
+		failWith = 0;
+		body = "v2";
+		Thread.sleep(400);
+		assertThat(text(fetcher.get(url, policy(Duration.ZERO, Duration.ZERO)))).isEqualTo("v2");
+		assertThat(fetcher.head(url, policy(Duration.ZERO, Duration.ZERO)).status()).isEqualTo(200);
+	}
+
+	private static RemoteFetcher.Policy policy(Duration fresh, Duration stale) {
+		return new RemoteFetcher.Policy(TIMEOUT, fresh, stale);
+	}
+
+	private static String text(RemoteFetcher.Response r) {
+		return new String(r.body(), StandardCharsets.UTF_8);
+	}
+
+	private void handle(HttpExchange ex) throws IOException {
+		try (ex) {
+			requests.incrementAndGet();
+			CountDownLatch g = gate;
+			if (g != null) g.await(5, TimeUnit.SECONDS);
+			if (delayMillis > 0) Thread.sleep(delayMillis);
+
+			if (failWith != 0) {
+				ex.sendResponseHeaders(failWith, -1);
+				return;
+			}
+			String etag = "\"" + body + "\"";
+			ex.getResponseHeaders().set("ETag", etag);
+			if (ex.getRequestHeaders().containsKey("If-None-Match")) {
+				conditional.incrementAndGet();
+				if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+					ex.sendResponseHeaders(304, -1);
+					return;
+				}
+			}
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			if ("HEAD".equals(ex.getRequestMethod())) {
+				ex.sendResponseHeaders(200, -1);
+				return;
+			}
+			ex.sendResponseHeaders(200, bytes.length);
+			try (OutputStream out = ex.getResponseBody()) {
+				out.write(bytes);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
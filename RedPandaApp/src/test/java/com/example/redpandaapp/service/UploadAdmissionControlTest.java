@@ -0,0 +1,33 @@
+package com.example.redpandaapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class UploadAdmissionControlTest {
+
+	@Test
+	void busyRejectionDoesNotSpendTheClientsToken() throws Exception {
+		// 同時1件・待ち行列なし・連投は2件まで（補充はほぼ無し）
+		UploadAdmissionControl admission = new UploadAdmissionControl(1, 0, Duration.ZERO, 2, 1, 100);
+
+		assertThat(admission.tryAdmit("a").admitted()).isTrue();
+		for (int i = 0; i < 5; i++) {
+			assertThat(admission.tryAdmit("b").reason()).isEqualTo("busy");
+		}
+		admission.release();
+
+		// 混雑で断られた分はトークンを使っていない
+		assertThat(admission.tryAdmit("b").admitted()).isTrue();
+		admission.release();
+		assertThat(admission.tryAdmit("b").admitted()).isTrue();
+		admission.release();
+		assertThat(admission.tryAdmit("b").reason()).isEqualTo("rate");
+
+		assertThat(admission.stats().rejectedBusy()).isEqualTo(5);
+		assertThat(admission.stats().rejectedRate()).isEqualTo(1);
+		assertThat(admission.stats().inFlight()).isZero();
+	}
+}